@@ -0,0 +1,24 @@
+package db;
+
+public enum Aggregate {
+
+	COUNT("Count"),
+	SUM("Sum"),
+	MIN("Min"),
+	MAX("Max"),
+	AVG("Avg");
+
+	private final String function;
+
+	private Aggregate(String function) {
+		this.function = function;
+	}
+
+	public String sql(String column) {
+		if (column == null) {
+			return function + "(*)";
+		}
+		return function + "(" + column + ")";
+	}
+
+}
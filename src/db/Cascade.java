@@ -0,0 +1,20 @@
+package db;
+
+public enum Cascade {
+
+	/**
+	 * L'entité liée n'est jamais sauvegardée avec l'entité qui la référence
+	 */
+	NONE,
+
+	/**
+	 * L'entité liée est toujours sauvegardée avec l'entité qui la référence
+	 */
+	SAVE,
+
+	/**
+	 * L'entité liée est sauvegardée seulement si elle n'a pas encore d'id
+	 */
+	SAVE_IF_NEW
+
+}
@@ -0,0 +1,182 @@
+package db;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import db.mapper.ColumnMapper;
+import db.mapper.ResultSetMapper;
+
+/**
+ * Invalidation du cache entre plusieurs processus utilisant la même base
+ * Chaque save / del ajoute (table, id, date du changement) dans une table de journal,
+ * chaque processus lit les nouvelles lignes par numéro de séquence et retire uniquement les ids modifiés
+ * Les numéros sont attribués à l'insertion et non à la validation : un numéro sauté est relu jusqu'à GAP_WAIT
+ */
+public class ChangeLog {
+
+	private static final Logger LOGGER = Logger.getLogger(ChangeLog.class.getName());
+	private static final boolean ENABLED = DatabaseProperties.getBool("changelog", false);
+	private static final String TABLE = DatabaseProperties.get("changelog.table") != null ? DatabaseProperties.get("changelog.table") : "jasipe_changelog";
+	private static final long POLL_INTERVAL = DatabaseProperties.getLong("changelog.poll", 1000);
+	private static final long RETENTION = DatabaseProperties.getLong("changelog.retention", 3600000);
+	/**
+	 * Durée en ms pendant laquelle un numéro sauté est attendu (transaction pas encore validée)
+	 */
+	private static final long GAP_WAIT = DatabaseProperties.getLong("changelog.gap", 60000);
+	private static final int MAX_GAPS = 10000;
+	private static final String ORIGIN = UUID.randomUUID().toString();
+	/**
+	 * Id enregistré pour un changement de toute la table, aucune entité n'a l'id 0
+	 */
+	private static final long ALL_ROWS = 0;
+
+	private static final Map<String, DatabaseTable<?>> tables = new ConcurrentHashMap<>();
+	private static ScheduledExecutorService poller = null;
+	private static long lastSeq = 0;
+	// Numéros inférieurs à lastSeq pas encore lus, avec la date où ils ont été sautés
+	private static final TreeMap<Long, Long> gaps = new TreeMap<>();
+	private static long lastCleanup = 0;
+
+	public static boolean isEnabled() {
+		return ENABLED;
+	}
+
+	/**
+	 * Enregistre une table dont le cache doit être invalidé, démarre la lecture du journal au premier appel
+	 * @param table
+	 * @param name
+	 */
+	public static synchronized void register(DatabaseTable<?> table, String name) {
+		if (!ENABLED) {
+			return;
+		}
+		tables.put(name.toUpperCase(), table);
+		if (poller == null) {
+			start();
+		}
+	}
+
+	public static void record(String table, long id) {
+		if (!ENABLED) {
+			return;
+		}
+		String sql = "Insert into " + TABLE + "(tbl, row_id, changed_at, origin) Values(?,?,?,?)";
+		if (!Database.execute(sql, Arrays.asList(table.toUpperCase(), id, System.currentTimeMillis(), ORIGIN))) {
+			LOGGER.warning("Unable to record the change of " + table + " #" + id);
+		}
+	}
+
+	/**
+	 * Enregistre un changement de toute la table (import), les autres processus vident leur cache
+	 * @param table
+	 */
+	public static void recordTable(String table) {
+		record(table, ALL_ROWS);
+	}
+
+	/**
+	 * Lit les changements des autres processus depuis le dernier appel et invalide les entités concernées
+	 * @return Le nombre d'entités invalidées
+	 */
+	public static synchronized int poll() {
+		long now = System.currentTimeMillis();
+		gaps.values().removeIf(skipped -> now - skipped > GAP_WAIT);
+		// Relecture à partir du plus ancien numéro sauté
+		long from = gaps.isEmpty() ? lastSeq : gaps.firstKey() - 1;
+		String sql = "Select seq, tbl, row_id, origin From " + TABLE + " Where seq > ? Order By seq";
+		List<Object[]> changes = Database.query(sql, Arrays.asList(from), changeMapper()).orElse(new ArrayList<>());
+		int count = 0;
+		for (Object[] change : changes) {
+			long seq = (Long) change[0];
+			if (seq <= lastSeq) {
+				if (gaps.remove(seq) == null) {
+					// Déjà lu
+					continue;
+				}
+			} else {
+				for (long skipped = lastSeq + 1; skipped < seq && gaps.size() < MAX_GAPS; skipped++) {
+					gaps.put(skipped, now);
+				}
+				lastSeq = seq;
+			}
+			if (ORIGIN.equals(change[3])) {
+				continue;
+			}
+			DatabaseTable<?> table = tables.get(change[1]);
+			if (table == null) {
+				continue;
+			}
+			if ((Long) change[2] == ALL_ROWS) {
+				table.clearCache();
+			} else {
+				table.invalidate((Long) change[2]);
+			}
+			count++;
+		}
+		cleanup();
+		return count;
+	}
+
+	public static synchronized void stop() {
+		if (poller != null) {
+			poller.shutdown();
+			poller = null;
+		}
+	}
+
+	private static void start() {
+		if (!new SchemaChecker(Database.getDb(), false).tableExists(TABLE)) {
+			LOGGER.info("Creating change log table " + TABLE);
+			Dialect dialect = Database.getDialect();
+			Database.execute("Create Table " + TABLE + " (" + dialect.identityColumn("seq") + ", tbl VARCHAR(128), row_id BIGINT, changed_at BIGINT, origin VARCHAR(36))");
+		}
+		// Les changements antérieurs au démarrage sont ignorés, le cache est vide
+		lastSeq = Database.query("Select Max(seq) From " + TABLE, ColumnMapper.longValue()).orElse(0L);
+		poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "jasipe-changelog");
+			thread.setDaemon(true);
+			return thread;
+		});
+		poller.scheduleWithFixedDelay(() -> {
+			try {
+				poll();
+			} catch (RuntimeException e) {
+				LOGGER.warning("Unable to read the change log: " + e.getMessage());
+			}
+		}, POLL_INTERVAL, POLL_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	private static void cleanup() {
+		long now = System.currentTimeMillis();
+		if (RETENTION <= 0 || now - lastCleanup < RETENTION / 10) {
+			return;
+		}
+		lastCleanup = now;
+		Database.execute("Delete From " + TABLE + " Where changed_at < ?", Arrays.asList(now - RETENTION));
+	}
+
+	private static ResultSetMapper<List<Object[]>> changeMapper() {
+		return rs -> {
+			try {
+				List<Object[]> list = new ArrayList<>();
+				while (rs.next()) {
+					list.add(new Object[]{rs.getLong(1), rs.getString(2).toUpperCase(), rs.getLong(3), rs.getString(4)});
+				}
+				return list;
+			} catch (SQLException e) {
+				throw new IllegalStateException("Unable to read the change log", e);
+			}
+		};
+	}
+
+}
@@ -0,0 +1,180 @@
+package db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Critères de recherche immuables, compilés en SQL paramétré
+ * Chaque méthode retourne une nouvelle instance, la forme (sans les valeurs) sert de clef de cache au SQL
+ */
+public final class Criteria {
+
+	private static final Criteria EMPTY = new Criteria(Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), 0);
+
+	private final List<String> conditions;
+	private final List<String> columns;
+	private final List<Object> values;
+	private final List<String> orders;
+	private final int limit;
+
+	private Criteria(List<String> conditions, List<String> columns, List<Object> values, List<String> orders, int limit) {
+		this.conditions = conditions;
+		this.columns = columns;
+		this.values = values;
+		this.orders = orders;
+		this.limit = limit;
+	}
+
+	public static Criteria where() {
+		return EMPTY;
+	}
+
+	public Criteria eq(String column, Object value) {
+		return condition(column, column + " = ?", value);
+	}
+
+	public Criteria ne(String column, Object value) {
+		return condition(column, column + " <> ?", value);
+	}
+
+	public Criteria lt(String column, Object value) {
+		return condition(column, column + " < ?", value);
+	}
+
+	public Criteria le(String column, Object value) {
+		return condition(column, column + " <= ?", value);
+	}
+
+	public Criteria gt(String column, Object value) {
+		return condition(column, column + " > ?", value);
+	}
+
+	public Criteria ge(String column, Object value) {
+		return condition(column, column + " >= ?", value);
+	}
+
+	public Criteria between(String column, Object low, Object high) {
+		return condition(column, column + " Between ? And ?", low, high);
+	}
+
+	public Criteria like(String column, String pattern) {
+		return condition(column, column + " Like ?", pattern);
+	}
+
+	public Criteria isNull(String column) {
+		return condition(column, column + " Is Null");
+	}
+
+	public Criteria isNotNull(String column) {
+		return condition(column, column + " Is Not Null");
+	}
+
+	public Criteria in(String column, Collection<?> values) {
+		// Une liste vide ne correspond à aucune ligne
+		if (values.isEmpty()) {
+			return condition(null, "1 = 0");
+		}
+		StringBuilder sql = new StringBuilder(column).append(" In (");
+		for (int i = 0; i < values.size(); i++) {
+			sql.append(i == 0 ? "?" : ",?");
+		}
+		sql.append(")");
+		return condition(column, sql.toString(), values.toArray());
+	}
+
+	public Criteria orderBy(String column) {
+		return order(column + " Asc");
+	}
+
+	public Criteria orderByDesc(String column) {
+		return order(column + " Desc");
+	}
+
+	public Criteria limit(int limit) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("Limit must be positive");
+		}
+		return new Criteria(conditions, columns, values, orders, limit);
+	}
+
+	/**
+	 * Les critères sans tri ni limite, pour les agrégats
+	 * @return
+	 */
+	public Criteria conditionsOnly() {
+		if (orders.isEmpty() && limit == 0) {
+			return this;
+		}
+		return new Criteria(conditions, columns, values, Collections.emptyList(), 0);
+	}
+
+	/**
+	 * La forme des critères, identique pour deux critères ne différant que par leurs valeurs
+	 * @return
+	 */
+	public String getShape() {
+		return String.join(" And ", conditions) + "|" + String.join(",", orders) + "|" + (limit > 0);
+	}
+
+	public List<Object> getParams() {
+		List<Object> params = new ArrayList<>(values);
+		if (limit > 0) {
+			params.add(limit);
+		}
+		return params;
+	}
+
+	/**
+	 * Les colonnes filtrées, dans l'ordre des conditions
+	 * @return
+	 */
+	List<String> columns() {
+		return columns;
+	}
+
+	String whereSQL() {
+		StringBuilder sql = new StringBuilder();
+		conditions.forEach(condition -> sql.append(" And ").append(condition));
+		return sql.toString();
+	}
+
+	/**
+	 * Le tri seul, sans la limite
+	 * @return
+	 */
+	String orderBySQL() {
+		if (orders.isEmpty()) {
+			return "";
+		}
+		return " Order By " + String.join(", ", orders);
+	}
+
+	String orderSQL(Dialect dialect) {
+		StringBuilder sql = new StringBuilder(orderBySQL());
+		if (limit > 0) {
+			sql.append(dialect.limit());
+		}
+		return sql.toString();
+	}
+
+	private Criteria condition(String column, String condition, Object... params) {
+		List<String> newConditions = new ArrayList<>(conditions);
+		newConditions.add(condition);
+		List<String> newColumns = new ArrayList<>(columns);
+		if (column != null) {
+			newColumns.add(column);
+		}
+		List<Object> newValues = new ArrayList<>(values);
+		Collections.addAll(newValues, params);
+		return new Criteria(Collections.unmodifiableList(newConditions), Collections.unmodifiableList(newColumns), Collections.unmodifiableList(newValues), orders, limit);
+	}
+
+	private Criteria order(String order) {
+		List<String> newOrders = new ArrayList<>(orders);
+		newOrders.add(order);
+		return new Criteria(conditions, columns, values, Collections.unmodifiableList(newOrders), limit);
+	}
+
+}
@@ -1,69 +1,188 @@
 package db;
 
+import db.mapper.ColumnSet;
 import db.mapper.ResultSetMapper;
+import jasipe.config.JasipeConfig;
+import jasipe.config.SQLiteProfile;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.sql.*;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 public class Database {
 
     private static final Logger LOGGER = Logger.getLogger(Database.class.getName());
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final int DEFAULT_TIMEOUT = -1;
+    private static SlowQueryLog slowQueryLog = new SlowQueryLog(0, false);
+    private static jasipe.db.Database connection;
     private static Connection db;
+    private static Dialect dialect = Dialect.OTHER;
+    private static final ThreadLocal<jasipe.db.Database> SHARD = new ThreadLocal<>();
+    private static final ThreadLocal<Map<jasipe.db.Database, List<Consumer<Boolean>>>> COMPLETIONS = ThreadLocal.withInitial(IdentityHashMap::new);
+
+    private static final Map<String, Long> startupTimings = Collections.synchronizedMap(new LinkedHashMap<>());
+    private static volatile boolean started = false;
+    private static volatile Thread startupThread = null;
+    private static CompletableFuture<Void> startup = null;
 
     static {
-        ini();
-        setup();
+        // Par défaut la base est démarrée à la première utilisation
+        if ("background".equals(DatabaseProperties.get("startup"))) {
+            startAsync();
+        }
     }
 
-    public static void ini() {
+    /**
+     * Start the database (connection, setup and schema check) if it is not already started
+     *
+     * @throws IllegalStateException If the startup fails, the next call tries again
+     */
+    public static void start() {
         try {
-            Class.forName("org.apache.derby.jdbc.EmbeddedDriver");
-        } catch (ClassNotFoundException e) {
-            LOGGER.severe("Unable to find Derby driver");
-            throw new IllegalStateException("Unable to connect to the database", e);
+            startAsync().join();
+        } catch (CompletionException e) {
+            Throwable cause = (e.getCause() != null) ? e.getCause() : e;
+            throw new IllegalStateException("Unable to start the database", cause);
         }
-        try {
-            db = DriverManager.getConnection(DatabaseProperties.get("url"));
-        } catch (SQLException e) {
-            LOGGER.severe(e.getMessage());
-            throw new IllegalStateException("Unable to connect to the database", e);
+    }
+
+    /**
+     * Start the database in a background thread
+     * The methods of this class wait for the end of the startup before running
+     *
+     * @return The startup, completed when the database can be used
+     */
+    public static synchronized CompletableFuture<Void> startAsync() {
+        if (startup == null) {
+            startup = CompletableFuture.runAsync(Database::startup, runnable -> {
+                Thread thread = new Thread(runnable, "jasipe-startup");
+                thread.setDaemon(true);
+                thread.start();
+            });
         }
+        return startup;
     }
 
-    public static void close() throws DatabaseException {
-        if (db != null) {
+    public static boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Duration in ms of each startup phase
+     *
+     * @return The phases in execution order
+     */
+    public static Map<String, Long> getStartupTimings() {
+        synchronized (startupTimings) {
+            return new LinkedHashMap<>(startupTimings);
+        }
+    }
+
+    public static void ini() {
+        String url = DatabaseProperties.get("url");
+        String driver = driver(url);
+        if (driver != null) {
             try {
-                db.close();
-                db = null;
-            } catch (SQLException e) {
-                LOGGER.warning(e.getMessage());
-                throw new DatabaseException("Unable to close database connection", e);
+                Class.forName(driver);
+            } catch (ClassNotFoundException e) {
+                LOGGER.severe("Unable to find the driver " + driver);
+                throw new IllegalStateException("Unable to connect to the database", e);
+            }
+        }
+        JasipeConfig config = config(url);
+        connection = jasipe.factory.DatabaseManager.otherConnection(config);
+        db = connection.getConnection();
+        dialect = Dialect.of(db);
+        slowQueryLog = new SlowQueryLog(config.getSlowQueryThreshold(), config.isExplainSlowQuery());
+    }
+
+    /**
+     * Configuration of a connection opened from the properties file
+     *
+     * @param url The JDBC url of the database
+     */
+    static JasipeConfig config(String url) {
+        // Avec readers > 0 les lectures sont routées vers des connexions en lecture seule
+        JasipeConfig config = new JasipeConfig();
+        config.setJdbcURL(url);
+        config.setCheckTable(false);
+        config.setReadConnections(DatabaseProperties.getInt("readers", 0));
+        config.setReaderWait(DatabaseProperties.getLong("readers.wait", 30000));
+        config.setSqliteProfile(SQLiteProfile.resolve(DatabaseProperties::get));
+        config.setQueryTimeout(DatabaseProperties.getInt("timeout", 0));
+        config.setSlowQueryThreshold(DatabaseProperties.getLong("slow_query", 0));
+        config.setExplainSlowQuery(DatabaseProperties.getBool("slow_query.explain", false));
+        return config;
+    }
+
+    /**
+     * Route the queries of the current thread to another database, used for sharded tables
+     *
+     * @param shard The database to use, null to go back to the main database
+     * @return The database used before
+     */
+    static jasipe.db.Database useShard(jasipe.db.Database shard) {
+        jasipe.db.Database previous = SHARD.get();
+        if (shard == null) {
+            SHARD.remove();
+        } else {
+            SHARD.set(shard);
+        }
+        return previous;
+    }
+
+    public static void close() throws DatabaseException {
+        // The pending writes are committed before the connection is closed
+        WriteQueue.close();
+        synchronized (Database.class) {
+            started = false;
+            startup = null;
+        }
+        if (connection != null) {
+            boolean closed = connection.close();
+            connection = null;
+            db = null;
+            if (!closed) {
+                throw new DatabaseException("Unable to close database connection");
             }
         }
     }
 
     public static void setup() {
         LOGGER.info("Checking the database");
-        if (isSet()) {
-            LOGGER.info("Database is already set");
-            return;
-        }
-        LOGGER.info("Creating table");
         DatabaseManager md = getDatabaseManager();
-        md.create().forEach(sql -> execute(sql));
-        List<String> content = md.content();
-        if (content != null) {
-            LOGGER.info("Add content");
-            content.forEach(sql -> execute(sql));
+        boolean set = timed("check", () -> isSet());
+        if (set) {
+            LOGGER.info("Database is already set");
+        } else {
+            createDatabase(md);
         }
+        timed("schema", () -> checkTables(md));
     }
 
     public static void unset() {
+        ensureStarted();
         if (!isSet()) {
             return;
         }
@@ -73,75 +192,350 @@ public class Database {
     }
 
     public static boolean query(String sql) {
-        try (Statement st = db.createStatement()) {
-            st.executeQuery(prepare(sql));
-            return true;
+        ensureStarted();
+        Connection reader = null;
+        try {
+            // A readers.wait timeout is reported like a failed query
+            reader = connection().getReadConnection();
+            try (Statement st = createStatement(reader, DEFAULT_TIMEOUT)) {
+                long start = System.nanoTime();
+                st.executeQuery(prepare(sql));
+                slowQueryLog.record(reader, prepare(sql), Collections.emptyList(), 0, start);
+                return true;
+            }
         } catch (SQLException | IllegalStateException e) {
             LOGGER.warning(e.getMessage());
             return false;
+        } finally {
+            if (reader != null) {
+                connection().releaseReadConnection(reader);
+            }
         }
     }
 
     public static <T> Optional<T> query(String sql, ResultSetMapper<T> mapper) {
-        try (Statement st = db.createStatement()) {
-            ResultSet result = st.executeQuery(prepare(sql));
-            T obj = mapper.map(result);
-            return (obj == null) ? Optional.empty() : Optional.of(obj);
+        ensureStarted();
+        List<Runnable> after = new ArrayList<>();
+        T obj;
+        Connection reader = null;
+        try {
+            reader = connection().getReadConnection();
+            try (Statement st = createStatement(reader, DEFAULT_TIMEOUT)) {
+                long start = System.nanoTime();
+                ResultSet result = st.executeQuery(prepare(sql));
+                long end = System.nanoTime();
+                obj = mapper.read(result, after::add);
+                slowQueryLog.record(reader, prepare(sql), Collections.emptyList(), countRows(obj), start, end);
+            }
         } catch (SQLException | IllegalStateException e) {
             LOGGER.warning(e.getMessage());
             return Optional.empty();
+        } finally {
+            if (reader != null) {
+                connection().releaseReadConnection(reader);
+            }
         }
+        return afterRelease(obj, after);
     }
 
     public static <T> Optional<T> query(String sql, List<Object> params, ResultSetMapper<T> mapper) {
-        try (PreparedStatement st = db.prepareStatement(prepare(sql))) {
-            int i = 1;
-            for (Object param : params) {
-                st.setObject(i++, param);
+        ensureStarted();
+        return query(sql, params, mapper, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Run a query with a specific timeout
+     *
+     * @param timeout Timeout in seconds, a negative value use the configured timeout
+     */
+    public static <T> Optional<T> query(String sql, List<Object> params, ResultSetMapper<T> mapper, int timeout) {
+        ensureStarted();
+        List<Runnable> after = new ArrayList<>();
+        T obj;
+        Connection reader = null;
+        try {
+            reader = connection().getReadConnection();
+            try (PreparedStatement st = prepareStatement(reader, prepare(sql), params, timeout)) {
+                long start = System.nanoTime();
+                ResultSet result = st.executeQuery();
+                long end = System.nanoTime();
+                obj = mapper.read(result, after::add);
+                slowQueryLog.record(reader, prepare(sql), params, countRows(obj), start, end);
             }
+        } catch (SQLException | IllegalStateException e) {
+            LOGGER.warning(e.getMessage());
+            return Optional.empty();
+        } finally {
+            if (reader != null) {
+                connection().releaseReadConnection(reader);
+            }
+        }
+        return afterRelease(obj, after);
+    }
+
+    /**
+     * Run a query on the write connection, for reads that must see the latest committed value
+     */
+    public static <T> Optional<T> queryForUpdate(String sql, List<Object> params, ResultSetMapper<T> mapper) {
+        ensureStarted();
+        List<Runnable> after = new ArrayList<>();
+        T obj;
+        jasipe.db.Database locked = lockWriter();
+        try (PreparedStatement st = prepareStatement(writer(), prepare(sql), params, DEFAULT_TIMEOUT)) {
+            long start = System.nanoTime();
             ResultSet result = st.executeQuery();
-            T obj = mapper.map(result);
-            return (obj == null) ? Optional.empty() : Optional.of(obj);
+            long end = System.nanoTime();
+            obj = mapper.read(result, after::add);
+            slowQueryLog.record(writer(), prepare(sql), params, countRows(obj), start, end);
         } catch (SQLException | IllegalStateException e) {
             LOGGER.warning(e.getMessage());
             return Optional.empty();
+        } finally {
+            locked.unlockWriter();
+        }
+        return afterRelease(obj, after);
+    }
+
+    /**
+     * Run the work left by the mapper (link loading) once the connection is released
+     */
+    private static <T> Optional<T> afterRelease(T obj, List<Runnable> after) {
+        // A linked table is not on the shard of the query, a sharded one routes its own reads
+        jasipe.db.Database shard = after.isEmpty() ? null : useShard(null);
+        try {
+            after.forEach(Runnable::run);
+        } catch (IllegalStateException e) {
+            LOGGER.warning(e.getMessage());
+            return Optional.empty();
+        } finally {
+            if (shard != null) {
+                useShard(shard);
+            }
+        }
+        return (obj == null) ? Optional.empty() : Optional.of(obj);
+    }
+
+    /**
+     * Start a transaction on the write connection
+     * Until commit or rollback, the queries of the current thread read from the write connection
+     *
+     * @throws DatabaseException
+     */
+    public static void begin() throws DatabaseException {
+        ensureStarted();
+        if (!connection().begin()) {
+            throw new DatabaseException("Unable to start the transaction");
+        }
+    }
+
+    public static void commit() throws DatabaseException {
+        ensureStarted();
+        jasipe.db.Database con = connection();
+        boolean committed = con.commit();
+        complete(con, committed);
+        if (!committed) {
+            throw new DatabaseException("Unable to commit the transaction");
+        }
+    }
+
+    public static void rollback() throws DatabaseException {
+        ensureStarted();
+        jasipe.db.Database con = connection();
+        boolean rolledBack = con.rollback();
+        complete(con, false);
+        if (!rolledBack) {
+            throw new DatabaseException("Unable to rollback the transaction");
+        }
+    }
+
+    /**
+     * Run an action when the transaction of the current thread ends, right away outside of a transaction
+     *
+     * @param action Receives true if the transaction was committed, false if it was rolled back
+     */
+    public static void onCompletion(Consumer<Boolean> action) {
+        ensureStarted();
+        jasipe.db.Database con = connection();
+        if (!con.isInTransaction()) {
+            action.accept(true);
+            return;
         }
+        COMPLETIONS.get().computeIfAbsent(con, key -> new ArrayList<>()).add(action);
+    }
+
+    public static boolean isInTransaction() {
+        ensureStarted();
+        return connection().isInTransaction();
     }
 
     public static boolean execute(String sql) {
-        try (Statement st = db.createStatement()) {
+        ensureStarted();
+        jasipe.db.Database locked = lockWriter();
+        try (Statement st = createStatement(writer(), DEFAULT_TIMEOUT)) {
+            long start = System.nanoTime();
             int result = st.executeUpdate(prepare(sql));
+            slowQueryLog.record(writer(), prepare(sql), Collections.emptyList(), result, start);
             return result == 1;
         } catch (SQLException e) {
             LOGGER.warning(e.getMessage());
             return false;
+        } finally {
+            locked.unlockWriter();
         }
     }
 
     public static boolean execute(String sql, List<Object> params) {
-        try (PreparedStatement st = db.prepareStatement(prepare(sql))) {
-            int i = 1;
-            for (Object param : params) {
-                st.setObject(i++, param);
-            }
+        ensureStarted();
+        return execute(sql, params, DEFAULT_TIMEOUT);
+    }
+
+    public static boolean execute(String sql, List<Object> params, int timeout) {
+        ensureStarted();
+        return executeForCount(sql, params, timeout).orElse(-1) == 1;
+    }
+
+    /**
+     * Execute a single statement
+     *
+     * @return The number of rows changed, empty if the statement failed
+     */
+    public static OptionalInt executeForCount(String sql, List<Object> params, int timeout) {
+        ensureStarted();
+        jasipe.db.Database locked = lockWriter();
+        try (PreparedStatement st = prepareStatement(writer(), prepare(sql), params, timeout)) {
+            long start = System.nanoTime();
             int result = st.executeUpdate();
-            return result == 1;
+            slowQueryLog.record(writer(), prepare(sql), params, result, start);
+            return OptionalInt.of(result);
         } catch (SQLException e) {
             LOGGER.warning(e.getMessage());
+            return OptionalInt.empty();
+        } finally {
+            locked.unlockWriter();
+        }
+    }
+
+    /**
+     * Execute the same statement for each parameter list in one JDBC batch
+     *
+     * @return true if every statement changed one row
+     */
+    public static boolean executeBatch(String sql, List<List<Object>> params, int timeout) {
+        Optional<int[]> results = executeBatchForCounts(sql, params, timeout);
+        if (results.isEmpty()) {
             return false;
         }
+        for (int result : results.get()) {
+            if (result != 1 && result != Statement.SUCCESS_NO_INFO) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Execute the same statement for each parameter list in one JDBC batch
+     *
+     * @return The update count of each statement, Statement.SUCCESS_NO_INFO when the driver does not report it
+     */
+    public static Optional<int[]> executeBatchForCounts(String sql, List<List<Object>> params, int timeout) {
+        ensureStarted();
+        jasipe.db.Database locked = lockWriter();
+        try (PreparedStatement st = writer().prepareStatement(prepare(sql))) {
+            st.setQueryTimeout(timeout(timeout));
+            for (List<Object> rowParams : params) {
+                int i = 1;
+                for (Object param : rowParams) {
+                    st.setObject(i++, param);
+                }
+                st.addBatch();
+            }
+            long start = System.nanoTime();
+            int[] results = st.executeBatch();
+            slowQueryLog.recordBatch(writer(), prepare(sql), params, results.length, start);
+            return Optional.of(results);
+        } catch (SQLException e) {
+            LOGGER.warning(e.getMessage());
+            return Optional.empty();
+        } finally {
+            locked.unlockWriter();
+        }
+    }
+
+    public static int executeScript(Iterator<String> script) throws DatabaseException {
+        ensureStarted();
+        int batchSize = DatabaseProperties.getInt("script.batch", DEFAULT_BATCH_SIZE);
+        return executeScript(script, batchSize, count -> LOGGER.info(count + " statements executed"));
+    }
+
+    /**
+     * Execute all the statements of a script in JDBC batches inside one transaction
+     *
+     * @param script    The statements to execute
+     * @param batchSize Number of statements sent per batch
+     * @param progress  Called after each batch with the number of statements executed so far
+     * @return The number of statements executed
+     * @throws DatabaseException If a statement fails, the whole script is rolled back
+     */
+    public static int executeScript(Iterator<String> script, int batchSize, IntConsumer progress) throws DatabaseException {
+        ensureStarted();
+        int count = 0;
+        boolean autoCommit = true;
+        jasipe.db.Database locked = lockWriter();
+        try (Statement st = createStatement(writer(), DEFAULT_TIMEOUT)) {
+            autoCommit = writer().getAutoCommit();
+            writer().setAutoCommit(false);
+            int pending = 0;
+            while (script.hasNext()) {
+                st.addBatch(script.next());
+                pending++;
+                if (pending >= batchSize) {
+                    st.executeBatch();
+                    count += pending;
+                    pending = 0;
+                    progress.accept(count);
+                }
+            }
+            if (pending > 0) {
+                st.executeBatch();
+                count += pending;
+                progress.accept(count);
+            }
+            writer().commit();
+            return count;
+        } catch (SQLException | UncheckedIOException e) {
+            rollbackScript();
+            throw new DatabaseException("Unable to execute SQL script after " + count + " statements", e);
+        } finally {
+            locked.unlockWriter();
+            try {
+                writer().setAutoCommit(autoCommit);
+            } catch (SQLException e) {
+                LOGGER.warning(e.getMessage());
+            }
+        }
     }
 
     public static Map<String, Object> insert(String sql, List<Object> params, String[] idField) {
+        ensureStarted();
+        return insert(sql, params, idField, DEFAULT_TIMEOUT);
+    }
+
+    public static Map<String, Object> insert(String sql, List<Object> params, String[] idField, int timeout) {
+        ensureStarted();
         Map<String, Object> ids = new HashMap<>();
-        try (PreparedStatement st = db.prepareStatement(prepare(sql), idField)) {
+        jasipe.db.Database locked = lockWriter();
+        try (PreparedStatement st = writer().prepareStatement(prepare(sql), idField)) {
+            st.setQueryTimeout(timeout(timeout));
             // Ajout parametre
             int i = 1;
             for (Object param : params) {
                 st.setObject(i++, param);
             }
             // Execution requete
+            long start = System.nanoTime();
             int result = st.executeUpdate();
+            slowQueryLog.record(writer(), prepare(sql), params, result, start);
             if (result != 1) {
                 return ids;
             }
@@ -157,17 +551,159 @@ public class Database {
         } catch (SQLException e) {
             LOGGER.warning(e.getMessage());
             return ids;
+        } finally {
+            locked.unlockWriter();
+        }
+    }
+
+    /**
+     * Insert a single row and read its generated id as a long, whatever the numeric type used by the driver
+     *
+     * @return The generated id, empty if the row was not inserted
+     */
+    public static OptionalLong insertForId(String sql, List<Object> params, String idField, int timeout) {
+        ensureStarted();
+        jasipe.db.Database locked = lockWriter();
+        try (PreparedStatement st = writer().prepareStatement(prepare(sql), new String[]{idField})) {
+            st.setQueryTimeout(timeout(timeout));
+            int i = 1;
+            for (Object param : params) {
+                st.setObject(i++, param);
+            }
+            long start = System.nanoTime();
+            int result = st.executeUpdate();
+            slowQueryLog.record(writer(), prepare(sql), params, result, start);
+            if (result != 1) {
+                return OptionalLong.empty();
+            }
+            try (ResultSet rs = st.getGeneratedKeys()) {
+                return rs.next() ? OptionalLong.of(rs.getLong(1)) : OptionalLong.empty();
+            }
+        } catch (SQLException e) {
+            LOGGER.warning(e.getMessage());
+            return OptionalLong.empty();
+        } finally {
+            locked.unlockWriter();
         }
     }
 
     public static boolean isSet() {
-        return query("Select * From " + DatabaseProperties.get("verification"));
+        ensureStarted();
+        return new SchemaChecker(db, false).tableExists(DatabaseProperties.get("verification"));
     }
 
     public static Connection getDb() {
+        ensureStarted();
         return db;
     }
 
+    public static Dialect getDialect() {
+        ensureStarted();
+        return dialect;
+    }
+
+    public static SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    private static void startup() {
+        startupThread = Thread.currentThread();
+        try {
+            startupTimings.clear();
+            long start = System.nanoTime();
+            timed("connect", () -> ini());
+            setup();
+            startupTimings.put("total", (System.nanoTime() - start) / 1_000_000);
+            started = true;
+            LOGGER.info("Database started " + getStartupTimings());
+        } catch (RuntimeException e) {
+            LOGGER.severe("Unable to start the database: " + e.getMessage());
+            // Une nouvelle tentative sera faite au prochain appel
+            synchronized (Database.class) {
+                startup = null;
+            }
+            throw e;
+        } finally {
+            startupThread = null;
+        }
+    }
+
+    private static void ensureStarted() {
+        if (started || Thread.currentThread() == startupThread) {
+            return;
+        }
+        start();
+    }
+
+    private static void timed(String phase, Runnable runnable) {
+        timed(phase, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    private static <T> T timed(String phase, Supplier<T> supplier) {
+        long start = System.nanoTime();
+        try {
+            return supplier.get();
+        } finally {
+            startupTimings.put(phase, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private static void createDatabase(DatabaseManager md) {
+        LOGGER.info("Creating table");
+        try {
+            long start = System.nanoTime();
+            executeScript(md.create().iterator());
+            startupTimings.put("create", (System.nanoTime() - start) / 1_000_000);
+            start = System.nanoTime();
+            SQLScriptReader script = md.contentScript();
+            if (script != null) {
+                LOGGER.info("Add content");
+                try (script) {
+                    executeScript(script);
+                }
+            } else {
+                List<String> content = md.content();
+                if (content != null) {
+                    LOGGER.info("Add content");
+                    executeScript(content.iterator());
+                }
+            }
+            startupTimings.put("content", (System.nanoTime() - start) / 1_000_000);
+        } catch (DatabaseException | IOException e) {
+            LOGGER.severe(e.getMessage());
+        }
+    }
+
+    private static void checkTables(DatabaseManager md) {
+        List<Class<?>> tables = md.tables();
+        if (!DatabaseProperties.getBool("check", true) || tables.isEmpty()) {
+            return;
+        }
+        SchemaChecker checker = new SchemaChecker(db, DatabaseProperties.getBool("create", false));
+        if (!checker.check(tables)) {
+            LOGGER.warning("The database schema does not match the entities");
+        }
+    }
+
+    /**
+     * Driver class to load for the url, null to let DriverManager find it
+     */
+    private static String driver(String url) {
+        if (url == null) {
+            return null;
+        }
+        if (url.startsWith("jdbc:derby:")) {
+            return "org.apache.derby.jdbc.EmbeddedDriver";
+        }
+        if (url.startsWith("jdbc:sqlite:")) {
+            return "org.sqlite.JDBC";
+        }
+        return null;
+    }
+
     private static DatabaseManager getDatabaseManager() {
         try {
             String className = DatabaseProperties.get("manager");
@@ -181,6 +717,76 @@ public class Database {
         }
     }
 
+    private static void rollbackScript() {
+        try {
+            writer().rollback();
+        } catch (SQLException e) {
+            LOGGER.warning(e.getMessage());
+        }
+    }
+
+    /**
+     * Lock the write connection for a single statement, the statements of another thread's transaction are not mixed with it
+     */
+    private static jasipe.db.Database lockWriter() {
+        jasipe.db.Database con = connection();
+        con.lockWriter();
+        return con;
+    }
+
+    private static void complete(jasipe.db.Database con, boolean committed) {
+        List<Consumer<Boolean>> actions = COMPLETIONS.get().remove(con);
+        if (actions != null) {
+            actions.forEach(action -> action.accept(committed));
+        }
+    }
+
+    private static jasipe.db.Database connection() {
+        jasipe.db.Database shard = SHARD.get();
+        return (shard != null) ? shard : connection;
+    }
+
+    private static Connection writer() {
+        jasipe.db.Database shard = SHARD.get();
+        return (shard != null) ? shard.getConnection() : db;
+    }
+
+    private static Statement createStatement(Connection con, int timeout) throws SQLException {
+        Statement st = con.createStatement();
+        st.setQueryTimeout(timeout(timeout));
+        return st;
+    }
+
+    private static PreparedStatement prepareStatement(Connection con, String sql, List<Object> params, int timeout) throws SQLException {
+        PreparedStatement st = con.prepareStatement(sql);
+        st.setQueryTimeout(timeout(timeout));
+        int i = 1;
+        for (Object param : params) {
+            st.setObject(i++, param);
+        }
+        return st;
+    }
+
+    private static int timeout(int timeout) {
+        return (timeout >= 0) ? timeout : connection().getConfiguration().getQueryTimeout();
+    }
+
+    private static int countRows(Object obj) {
+        if (obj == null) {
+            return 0;
+        }
+        if (obj instanceof Collection) {
+            return ((Collection<?>) obj).size();
+        }
+        if (obj instanceof ColumnSet) {
+            return ((ColumnSet) obj).size();
+        }
+        if (obj.getClass().isArray()) {
+            return Array.getLength(obj);
+        }
+        return 1;
+    }
+
     private static String prepare(String sqlQuery) {
         String result = sqlQuery.trim();
         result = result.charAt(result.length() - 1) == ';' ? result.substring(0, result.length() - 1) : result;
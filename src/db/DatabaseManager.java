@@ -1,15 +1,17 @@
 package db;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 public abstract class DatabaseManager {
 	
@@ -25,6 +27,45 @@ public abstract class DatabaseManager {
 	
 	public abstract List<String> content();
 	
+	/**
+	 * Les classes DatabaseTable à vérifier au démarrage
+	 * @return
+	 */
+	public List<Class<?>> tables() {
+		return new ArrayList<>();
+	}
+	
+	/**
+	 * Script de contenu lu en flux, à surcharger pour les gros fichiers de données
+	 * Si null la liste de content() est utilisée
+	 * @return
+	 */
+	public SQLScriptReader contentScript() {
+		return null;
+	}
+	
+	public SQLScriptReader openSQLFile(String sqlFile) {
+		InputStream is = DatabaseManager.class.getResourceAsStream(sqlFile);
+		if (is == null) {
+			LOGGER.severe("Unable to find SQL file: " + sqlFile);
+			return null;
+		}
+		return new SQLScriptReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+	}
+	
+	public SQLScriptReader openSQLFile(File sqlFile) {
+		if (! (sqlFile.exists() && sqlFile.canRead())) {
+			LOGGER.warning("Unable to find SQL file (" + sqlFile.getPath() + ")");
+			return null;
+		}
+		try {
+			return new SQLScriptReader(Files.newBufferedReader(sqlFile.toPath(), StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			LOGGER.severe("Unable to read SQL File: " + e.getMessage());
+			return null;
+		}
+	}
+	
 	public List<String> readSQLFile(String sqlFile) {
 		try {
 			URL ressource = DatabaseManager.class.getResource(sqlFile);
@@ -41,14 +82,13 @@ public abstract class DatabaseManager {
 			return new ArrayList<>();
 		}
 		// Lecture du fichier
-		try {
-			FileInputStream fis = new FileInputStream(sqlFile);
-			byte[] data = new byte[(int) sqlFile.length()];
-			fis.read(data);
-			fis.close();
-			String sql = new String(data, "UTF-8");
-			return Arrays.asList(sql.split(";\n")).stream().filter(elt -> !elt.trim().isEmpty()).collect(Collectors.toList());
-		} catch (IOException e) {
+		List<String> result = new ArrayList<>();
+		try (SQLScriptReader script = openSQLFile(sqlFile)) {
+			if (script != null) {
+				script.forEachRemaining(result::add);
+			}
+			return result;
+		} catch (IOException | UncheckedIOException e) {
 			LOGGER.severe("Unable to read SQL File: " + e.getMessage());
 			return new ArrayList<>();
 		}
@@ -14,13 +14,47 @@ public class DatabaseProperties {
 		}
 	}
 	
+	/**
+	 * Une propriété système db.<key> remplace la valeur du fichier (ex : -Ddb.cache=false)
+	 * @param key
+	 * @return
+	 */
+	private static String value(String key) {
+		String prop = System.getProperty("db." + key);
+		return (prop != null) ? prop : properties.getProperty(key);
+	}
+	
 	public static String get(String key) {
-		return properties.getProperty(key);
+		return value(key);
 	}
 	
 	public static boolean getBool(String key) {
-		String prop = properties.getProperty(key);
+		String prop = value(key);
 		return "true".equals(prop.toLowerCase());
 	}
+	
+	public static boolean getBool(String key, boolean defaultValue) {
+		String prop = value(key);
+		if (prop == null) {
+			return defaultValue;
+		}
+		return "true".equals(prop.trim().toLowerCase());
+	}
+	
+	public static int getInt(String key, int defaultValue) {
+		String prop = value(key);
+		if (prop == null) {
+			return defaultValue;
+		}
+		return Integer.parseInt(prop.trim());
+	}
+	
+	public static long getLong(String key, long defaultValue) {
+		String prop = value(key);
+		if (prop == null) {
+			return defaultValue;
+		}
+		return Long.parseLong(prop.trim());
+	}
 
 }
@@ -2,21 +2,76 @@ package db;
 
 import java.util.List;
 import java.lang.reflect.Field;
-import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
+import db.annotation.DbLink;
 import db.annotation.DbTable;
+import db.cache.BloomMissFilter;
+import db.cache.CachePolicy;
+import db.cache.CacheReference;
+import db.cache.CacheStrategy;
+import db.cache.MissFilter;
+import db.cache.ShardedCache;
+import db.cache.TableCache;
+import db.id.IdGenerator;
+import db.id.IdGenerators;
+import db.mapper.ColumnMapper;
+import db.mapper.ColumnSet;
 import db.mapper.DatabaseMapper;
+import db.mapper.ResultSetMapper;
 
 public abstract class DatabaseTable<T extends Persistable> {
 	
 	private static final Logger LOGGER = Logger.getLogger(DatabaseTable.class.getName());
 	
-	private Map<Long, T> cacheMap = new HashMap<>();
+	private final TableCache<T> cache;
+	private final MissFilter misses;
+	private final int shards;
+	private final Field versionField;
+	private final List<Field> declaredJoins;
+	private IdGenerator idGenerator;
+	private boolean idGeneratorResolved = false;
+	
+	protected DatabaseTable() {
+		DbTable dbTable = getDbTableAnnotation();
+		versionField = DatabaseUtils.getVersionField(dbTable.entity());
+		declaredJoins = joinedLinks(null);
+		// Politique de cache résolue une seule fois
+		if (dbTable.sharding() == ShardStrategy.NONE) {
+			shards = 0;
+			cache = CacheStrategy.resolve(dbTable);
+		} else {
+			// Table répartie : un cache par shard
+			shards = Shards.count();
+			Shards.register(this);
+			List<TableCache<T>> caches = new ArrayList<>();
+			for (int i = 0; i < shards; i++) {
+				caches.add(CacheStrategy.resolve(dbTable));
+			}
+			cache = new ShardedCache<>(caches, this::shardOf);
+		}
+		// Le filtre de Bloom lit la seule colonne id
+		misses = CacheStrategy.resolveMisses(dbTable, () -> fetchLongColumn(DatabaseUtils.getDbField(DatabaseUtils.getIdField(dbTable.entity()))));
+		if (shards > 0 && !declaredJoins.isEmpty()) {
+			throw new IllegalStateException("The sharded table " + dbTable.name() + " can't join its links");
+		}
+		if (shards > 0 && misses instanceof BloomMissFilter) {
+			throw new IllegalStateException("The Bloom filter is not available on the sharded table " + dbTable.name());
+		}
+		if (cache.isEnabled()) {
+			ChangeLog.register(this, getDbTableAnnotation().name());
+		}
+	}
 	
 	public T get(T obj) {
 		return getById(obj.getId());
@@ -27,13 +82,34 @@ public abstract class DatabaseTable<T extends Persistable> {
 	}
 	
 	public T getById(long id) {
-		if (cacheMap.containsKey(id)) {
-			return cacheMap.get(id);
+		return getById(id, declaredJoins);
+	}
+	
+	/**
+	 * Récupère une entité en choisissant le chargement de ses liens
+	 * @param id
+	 * @param fetch JOIN pour lire tous les liens dans la même requête, SELECT pour les charger par leur id
+	 * @return
+	 */
+	public T getById(long id, Fetch fetch) {
+		return getById(id, joinedLinks(fetch));
+	}
+	
+	private T getById(long id, List<Field> joins) {
+		loadFullTable();
+		T obj = cache.get(id);
+		if (obj != null) {
+			return obj;
+		}
+		// Toute la table est en cache ou l'id est connu comme absent, inutile d'aller en base
+		if (cache.isComplete() || misses.isMissing(id)) {
+			return null;
 		}
-		Optional<T> opt = getFromDbById(id);
+		Optional<T> opt = getFromDbById(id, joins);
 		if(opt.isPresent()) {
 			return cache(opt.get());
 		}
+		misses.missed(id);
 		return null;
 	}
 	
@@ -46,28 +122,179 @@ public abstract class DatabaseTable<T extends Persistable> {
 	}
 	
 	public List<T> getByField(String fieldname, Object value) {
+		IndexAdvisor.record(getDbTableAnnotation(), Collections.singletonList(fieldname));
 		List<T> list = getFromDbByField(fieldname, value);
 		return cache(list);
 	}
 	
 	public List<T> getWhere(List<String> fields, List<Object> values) {
+		IndexAdvisor.record(getDbTableAnnotation(), fields);
 		List<T> list = getWhereFromDb(fields, values);
 		return cache(list);
 	}
 	
+	public List<T> getWhere(Criteria criteria) {
+		return getWhere(criteria, declaredJoins);
+	}
+	
+	/**
+	 * Recherche des entités en choisissant le chargement de leurs liens
+	 * @param criteria
+	 * @param fetch JOIN pour lire tous les liens dans la même requête, SELECT pour les charger par leur id
+	 * @return
+	 */
+	public List<T> getWhere(Criteria criteria, Fetch fetch) {
+		return getWhere(criteria, joinedLinks(fetch));
+	}
+	
+	private List<T> getWhere(Criteria criteria, List<Field> joins) {
+		DbTable dbTable = getDbTableAnnotation();
+		IndexAdvisor.record(dbTable, criteria.columns());
+		String sql = SQLQueryBuilder.criteriaQuery(dbTable.name(), "*", criteria, Database.getDialect());
+		if (!joins.isEmpty()) {
+			return cache(joinQuery(sql, criteria.getParams(), criteria.orderBySQL(), joins));
+		}
+		// Sur une table répartie, le tri et la limite s'appliquent sur chaque shard
+		List<T> list = gather(() -> Database.query(sql, criteria.getParams(), DatabaseMapper.<T>listMapper(dbTable), dbTable.timeout()).orElse(new ArrayList<>()));
+		return cache(list);
+	}
+	
 	public List<T> getAll() {
+		if (cache.isComplete()) {
+			List<T> cached = cache.getAll();
+			// Une entité libérée ou invalidée pendant la lecture rend le cache incomplet
+			if (cache.isComplete()) {
+				return cached;
+			}
+		}
 		List<T> list = getAllFromDb();
+		if (cache.getPolicy() == CachePolicy.FULL_TABLE) {
+			cache.fill(list);
+			return list;
+		}
 		return cache(list);
 	}
 	
+	public long[] fetchLongColumn(String column) {
+		return fetchLongColumn(column, new ArrayList<>(), new ArrayList<>());
+	}
+	
+	public long[] fetchLongColumn(String column, List<String> where, List<Object> values) {
+		return fetchColumn(column, where, values, ColumnMapper.longColumn()).orElse(new long[0]);
+	}
+	
+	public double[] fetchDoubleColumn(String column) {
+		return fetchDoubleColumn(column, new ArrayList<>(), new ArrayList<>());
+	}
+	
+	public double[] fetchDoubleColumn(String column, List<String> where, List<Object> values) {
+		return fetchColumn(column, where, values, ColumnMapper.doubleColumn()).orElse(new double[0]);
+	}
+	
+	public String[] fetchStringColumn(String column) {
+		return fetchStringColumn(column, new ArrayList<>(), new ArrayList<>());
+	}
+	
+	public String[] fetchStringColumn(String column, List<String> where, List<Object> values) {
+		return fetchColumn(column, where, values, ColumnMapper.stringColumn()).orElse(new String[0]);
+	}
+	
+	public Optional<ColumnSet> fetchColumns(List<String> columns, List<String> where, List<Object> values) {
+		checkNotSharded("fetchColumns");
+		DbTable dbTable = getDbTableAnnotation();
+		// Requete sql, sans passer par les entités ni le cache
+		SQLQueryBuilder sql = SQLQueryBuilder.selectQuery(dbTable.name());
+		sql.columns(columns);
+		where.forEach(elt -> sql.add(elt));
+		return Database.query(sql.toString(), values, ColumnMapper.columns(), dbTable.timeout());
+	}
+	
+	public long count() {
+		return count(new ArrayList<>(), new ArrayList<>());
+	}
+	
+	public long count(List<String> where, List<Object> values) {
+		IndexAdvisor.record(getDbTableAnnotation(), where);
+		SQLQueryBuilder sql = aggregateQuery(Aggregate.COUNT, null, where);
+		return sum(() -> Database.query(sql.toString(), values, ColumnMapper.longValue(), getDbTableAnnotation().timeout()).orElse(0L));
+	}
+	
+	public long count(Criteria criteria) {
+		DbTable dbTable = getDbTableAnnotation();
+		IndexAdvisor.record(dbTable, criteria.columns());
+		Criteria conditions = criteria.conditionsOnly();
+		String sql = SQLQueryBuilder.criteriaQuery(dbTable.name(), Aggregate.COUNT.sql(null), conditions, Database.getDialect());
+		return sum(() -> Database.query(sql, conditions.getParams(), ColumnMapper.longValue(), dbTable.timeout()).orElse(0L));
+	}
+	
+	public boolean exists(Criteria criteria) {
+		DbTable dbTable = getDbTableAnnotation();
+		IndexAdvisor.record(dbTable, criteria.columns());
+		Criteria conditions = criteria.conditionsOnly();
+		String sql = SQLQueryBuilder.criteriaQuery(dbTable.name(), "1", conditions, Database.getDialect());
+		return any(() -> Database.query(sql, conditions.getParams(), ColumnMapper.exists(), dbTable.timeout()).orElse(false));
+	}
+	
+	public boolean exists(List<String> where, List<Object> values) {
+		DbTable dbTable = getDbTableAnnotation();
+		IndexAdvisor.record(dbTable, where);
+		SQLQueryBuilder sql = SQLQueryBuilder.existsQuery(dbTable.name());
+		where.forEach(elt -> sql.add(elt));
+		return any(() -> Database.query(sql.toString(), values, ColumnMapper.exists(), dbTable.timeout()).orElse(false));
+	}
+	
+	public double sum(String column) {
+		return sum(column, new ArrayList<>(), new ArrayList<>());
+	}
+	
+	public double sum(String column, List<String> where, List<Object> values) {
+		return aggregate(Aggregate.SUM, column, where, values).orElse(0.);
+	}
+	
+	public Optional<Double> min(String column) {
+		return min(column, new ArrayList<>(), new ArrayList<>());
+	}
+	
+	public Optional<Double> min(String column, List<String> where, List<Object> values) {
+		return aggregate(Aggregate.MIN, column, where, values);
+	}
+	
+	public Optional<Double> max(String column) {
+		return max(column, new ArrayList<>(), new ArrayList<>());
+	}
+	
+	public Optional<Double> max(String column, List<String> where, List<Object> values) {
+		return aggregate(Aggregate.MAX, column, where, values);
+	}
+	
+	public Optional<Double> avg(String column) {
+		return avg(column, new ArrayList<>(), new ArrayList<>());
+	}
+	
+	public Optional<Double> avg(String column, List<String> where, List<Object> values) {
+		return aggregate(Aggregate.AVG, column, where, values);
+	}
+	
+	public Map<Object, Long> countBy(String groupColumn, List<String> where, List<Object> values) {
+		checkNotSharded("countBy");
+		SQLQueryBuilder sql = aggregateQuery(Aggregate.COUNT, null, where).groupBy(groupColumn);
+		return Database.query(sql.toString(), values, ColumnMapper.countMap(), getDbTableAnnotation().timeout()).orElse(new LinkedHashMap<>());
+	}
+	
+	public Map<Object, Double> groupBy(String groupColumn, Aggregate aggregate, String column, List<String> where, List<Object> values) {
+		checkNotSharded("groupBy");
+		SQLQueryBuilder sql = aggregateQuery(aggregate, column, where).groupBy(groupColumn);
+		return Database.query(sql.toString(), values, ColumnMapper.groupMap(), getDbTableAnnotation().timeout()).orElse(new LinkedHashMap<>());
+	}
+	
 	public T refresh(long id) throws DatabaseException {
-		if (!DatabaseProperties.getBool("cache")) {
+		if (!cache.isEnabled()) {
 			throw new DatabaseException("Cache is not enabled, can't refresh");
 		}
-		if (!cacheMap.containsKey(id)) {
+		if (!cache.contains(id)) {
 			throw new DatabaseException("Entity is not load, can't refresh");
 		}
-		Optional<T> optObj = getFromDbById(id);
+		Optional<T> optObj = getFromDbById(id, declaredJoins);
 		if(!optObj.isPresent()) {
 			throw new DatabaseException("Unable to find entity in the database");
 		}
@@ -79,36 +306,230 @@ public abstract class DatabaseTable<T extends Persistable> {
 	}
 	
 	public T save(T obj) {
+		return (saveAll(Collections.singletonList(obj)) == null) ? null : obj;
+	}
+	
+	/**
+	 * Sauvegarde une liste d'entités et les entités liées selon la cascade de chaque DbLink
+	 * Les écritures sont faites dans une seule transaction, les entités liées en premier et regroupées par table
+	 * Avec un id HILO ou SEQUENCE les ids sont attribués en mémoire et les insertions envoyées en un seul batch
+	 * @param list
+	 * @return La liste sauvegardée ou null en cas d'erreur
+	 */
+	public List<T> saveAll(List<T> list) {
 		try {
-			// Si le cache est activé on se base dessus
-			if (DatabaseProperties.getBool("cache")) {
-				if (cacheMap.containsKey(obj.getId())) {
-					update(obj);
-				} else {
-					insert(obj);
+			return saveAllOrThrow(list);
+		} catch (DatabaseException | IllegalStateException e) {
+			LOGGER.severe(e.getMessage());
+			return null;
+		}
+	}
+	
+	public T saveOrThrow(T obj) throws DatabaseException {
+		saveAllOrThrow(Collections.singletonList(obj));
+		return obj;
+	}
+	
+	/**
+	 * Sauvegarde comme saveAll mais remonte l'erreur, après l'annulation de la transaction
+	 * @param list
+	 * @return
+	 * @throws OptimisticLockException Si une entité versionnée a été modifiée depuis sa lecture
+	 * @throws DatabaseException
+	 */
+	public List<T> saveAllOrThrow(List<T> list) throws DatabaseException {
+		// Avec la file d'écriture, la transaction d'un appelant reste sur son propre thread
+		if (WriteQueue.isEnabled() && !Database.isInTransaction()) {
+			return WriteQueue.await(saveAllAsync(list));
+		}
+		PendingSave save = new PendingSave(list, this);
+		// Une seule écriture n'a pas besoin de transaction
+		boolean transaction = save.size() > 1 && !Database.isInTransaction();
+		try {
+			if (transaction) {
+				Database.begin();
+			}
+			save.write();
+			if (transaction) {
+				Database.commit();
+			}
+		} catch (DatabaseException | IllegalStateException e) {
+			if (transaction) {
+				try {
+					Database.rollback();
+				} catch (DatabaseException ex) {
+					LOGGER.severe(ex.getMessage());
 				}
-			} 
-			// Sinon on regarde en base
-			else {
-				if (findById(obj.getId()).isPresent()) {
-					update(obj);
-				} else {
-					insert(obj);
+			}
+			// Les entités écrites avant l'erreur seront relues
+			Database.onCompletion(committed -> save.completed(false));
+			throw e;
+		}
+		// Le cache et les versions sont mis à jour une fois les écritures validées, à la fin de la transaction de l'appelant s'il en a une
+		Database.onCompletion(save::completed);
+		return list;
+	}
+	
+	public CompletableFuture<T> saveAsync(T obj) {
+		return saveAllAsync(Collections.singletonList(obj)).thenApply(list -> obj);
+	}
+	
+	/**
+	 * Sauvegarde par la file d'écriture, groupée avec les autres écritures en attente dans une seule transaction
+	 * @param list
+	 * @return Terminé une fois la transaction validée
+	 */
+	public CompletableFuture<List<T>> saveAllAsync(List<T> list) {
+		return WriteQueue.submit(new PendingSave(list, this)).thenApply(v -> list);
+	}
+	
+	/**
+	 * Ecrit les entités de la table sans leurs liens, sur leur shard pour une table répartie
+	 * @param list
+	 * @param versions Reçoit la nouvelle version des entités mises à jour
+	 * @throws DatabaseException
+	 */
+	void write(List<T> list, Map<Persistable, Long> versions) throws DatabaseException {
+		if (shards == 0) {
+			writeRows(new ArrayList<>(), list, versions);
+		} else {
+			writeShards(list, versions);
+		}
+		for (T obj : list) {
+			ChangeLog.record(getDbTableAnnotation().name(), obj.getId());
+		}
+	}
+	
+	/**
+	 * Ecritures annulées avec la transaction : les entités en cache ont pu être modifiées, elles seront relues
+	 * @param list
+	 */
+	void discarded(List<T> list) {
+		list.forEach(obj -> {
+			if (obj.getId() > 0) {
+				cache.invalidate(obj.getId());
+			}
+		});
+	}
+	
+	/**
+	 * Insertion annulée : l'entité redevient une entité non sauvegardée
+	 * @param obj
+	 */
+	void unsaved(T obj) {
+		if (obj.getId() > 0) {
+			setId(obj, DatabaseUtils.getIdField(obj.getClass()), 0);
+		}
+	}
+	
+	void written(List<T> list, Map<Persistable, Long> versions) {
+		list.forEach(obj -> {
+			Long version = versions.get(obj);
+			if (version != null) {
+				setVersion(obj, version);
+			}
+			misses.added(obj.getId());
+			cache.write(obj);
+		});
+	}
+	
+	/**
+	 * Ecrit les entités sur leur shard, chaque shard dans sa propre transaction
+	 * @param list
+	 * @throws DatabaseException
+	 */
+	private void writeShards(List<T> list, Map<Persistable, Long> versions) throws DatabaseException {
+		IdGenerator generator = getIdGenerator();
+		Field idField = DatabaseUtils.getIdField(getDbTableAnnotation().entity());
+		// Id attribué avant l'écriture pour connaitre le shard
+		List<List<T>> inserts = new ArrayList<>();
+		List<List<T>> others = new ArrayList<>();
+		for (int i = 0; i < shards; i++) {
+			inserts.add(new ArrayList<>());
+			others.add(new ArrayList<>());
+		}
+		for (T obj : list) {
+			if (obj.getId() <= 0) {
+				setId(obj, idField, generator.next());
+				inserts.get(shardOf(obj.getId())).add(obj);
+			} else {
+				others.get(shardOf(obj.getId())).add(obj);
+			}
+		}
+		for (int i = 0; i < shards; i++) {
+			List<T> shardInserts = inserts.get(i);
+			List<T> shardOthers = others.get(i);
+			if (shardInserts.isEmpty() && shardOthers.isEmpty()) {
+				continue;
+			}
+			onShard(i, () -> {
+				boolean transaction = shardInserts.size() + shardOthers.size() > 1 && !Database.isInTransaction();
+				if (transaction) {
+					Database.begin();
+				}
+				try {
+					writeRows(shardInserts, shardOthers, versions);
+					if (transaction) {
+						Database.commit();
+					}
+				} catch (DatabaseException | IllegalStateException e) {
+					if (transaction) {
+						Database.rollback();
+					}
+					throw e;
 				}
+			});
+		}
+	}
+	
+	/**
+	 * Ecrit les entités de la table sans leurs liens
+	 * @param inserts Les entités à insérer
+	 * @param list Les entités à insérer ou mettre à jour selon le cache et la base
+	 * @param versions
+	 * @throws DatabaseException
+	 */
+	private void writeRows(List<T> inserts, List<T> list, Map<Persistable, Long> versions) throws DatabaseException {
+		// Répartition insertion / mise à jour
+		List<T> updates = new ArrayList<>();
+		List<T> unknown = new ArrayList<>();
+		for (T obj : list) {
+			if (cache.contains(obj.getId())) {
+				updates.add(obj);
+			} else if (obj.getId() <= 0 || cache.isComplete()) {
+				inserts.add(obj);
+			} else {
+				unknown.add(obj);
 			}
-			return cache(obj);
-		} catch (DatabaseException e) {
-			LOGGER.severe(e.getMessage());
-			return null;
 		}
+		if (!unknown.isEmpty()) {
+			Set<Long> existing = existingIds(unknown);
+			unknown.forEach(obj -> (existing.contains(obj.getId()) ? updates : inserts).add(obj));
+		}
+		insertAll(inserts);
+		updateAll(updates, versions);
 	}
 	
 	public boolean del(long id) {
+		if (WriteQueue.isEnabled() && !Database.isInTransaction()) {
+			try {
+				WriteQueue.await(delAsync(id));
+				return true;
+			} catch (DatabaseException | IllegalStateException e) {
+				LOGGER.severe(e.getMessage());
+				return false;
+			}
+		}
 		try {
 			// Suppr de la base
-			delete(id);
+			if (shards == 0) {
+				delete(id);
+			} else {
+				onShard(shardOf(id), () -> delete(id));
+			}
 			// Retire du cache
 			remove(id);
+			ChangeLog.record(getDbTableAnnotation().name(), id);
 			// TOut est ok
 			return true;
 		} catch (DatabaseException e) {
@@ -122,21 +543,82 @@ public abstract class DatabaseTable<T extends Persistable> {
 		return del(obj.getId());
 	}
 	
-	protected T cache(T obj) {
-		// Si l'objet à un id invalide
-		if (obj.getId() <= 0) {
-			return obj;
-		}
-		// Si le cache est actif
-		if (DatabaseProperties.getBool("cache")) {
-			if (cacheMap.containsKey(obj.getId())) {
-				cacheMap.replace(obj.getId(), obj);
-			} else {
-				cacheMap.put(obj.getId(), obj);
+	/**
+	 * Suppression par la file d'écriture
+	 * @param id
+	 * @return Terminé une fois la transaction validée
+	 */
+	public CompletableFuture<Void> delAsync(long id) {
+		return WriteQueue.submit(new WriteQueue.Write() {
+			
+			@Override
+			public void write() throws DatabaseException {
+				if (shards == 0) {
+					delete(id);
+				} else {
+					onShard(shardOf(id), () -> delete(id));
+				}
+				ChangeLog.record(getDbTableAnnotation().name(), id);
+			}
+			
+			@Override
+			public void written() {
+				remove(id);
 			}
+			
+		});
+	}
+	
+	public CachePolicy getCachePolicy() {
+		return cache.getPolicy();
+	}
+	
+	public CacheReference getCacheReference() {
+		return cache.getReference();
+	}
+	
+	/**
+	 * Nombre d'entités en cache, avec des références SOFT ou WEAK il baisse quand le ramasse-miettes libère des entités
+	 * @return
+	 */
+	public int getCacheSize() {
+		return cache.size();
+	}
+	
+	public void clearCache() {
+		cache.clear();
+		misses.clear();
+	}
+	
+	void invalidate(long id) {
+		// L'id a pu être créé par un autre processus
+		misses.added(id);
+		cache.invalidate(id);
+	}
+	
+	/**
+	 * Les prochains ids générés suivent le plus grand id de la table, après l'insertion d'ids explicites
+	 */
+	void skipInsertedIds() {
+		IdGenerator generator = getIdGenerator();
+		if (generator != null) {
+			DbTable dbTable = getDbTableAnnotation();
+			generator.skip(IdGenerators.maxId(dbTable, DatabaseUtils.getIdField(dbTable.entity())));
 		}
-		//System.out.println("Cache size: " + cacheMap.size());
-		//cacheMap.forEach((key, val) -> System.out.println("Cache: " + key));
+	}
+	
+	/**
+	 * Entité lue par la jointure d'une autre table : l'instance déjà en cache si elle existe, sinon l'entité lue mise en cache
+	 * @param obj
+	 * @return
+	 */
+	public T cacheJoined(T obj) {
+		T cached = cache.get(obj.getId());
+		return (cached != null) ? cached : cache(obj);
+	}
+	
+	protected T cache(T obj) {
+		cache.read(obj);
 		return obj;
 	}
 	
@@ -146,8 +628,12 @@ public abstract class DatabaseTable<T extends Persistable> {
 	}
 	
 	private void remove(long id) {
-		if (cacheMap.containsKey(id)) {
-			cacheMap.remove(id);
+		cache.remove(id);
+	}
+	
+	private void loadFullTable() {
+		if (cache.getPolicy() == CachePolicy.FULL_TABLE && !cache.isComplete()) {
+			cache.fill(getAllFromDb());
 		}
 	}
 	
@@ -160,7 +646,51 @@ public abstract class DatabaseTable<T extends Persistable> {
 		return clazz.getAnnotation(DbTable.class);
 	}
 	
-	private Optional<T> getFromDbById(long id) {
+	private Optional<Double> aggregate(Aggregate aggregate, String column, List<String> where, List<Object> values) {
+		SQLQueryBuilder sql = aggregateQuery(aggregate, column, where);
+		if (shards == 0) {
+			return Database.query(sql.toString(), values, ColumnMapper.doubleValue(), getDbTableAnnotation().timeout());
+		}
+		if (aggregate == Aggregate.AVG) {
+			checkNotSharded("avg");
+		}
+		// Combinaison des résultats de chaque shard
+		Optional<Double> result = Optional.empty();
+		for (Optional<Double> value : Shards.scatter(() -> Database.query(sql.toString(), values, ColumnMapper.doubleValue(), getDbTableAnnotation().timeout()))) {
+			if (value.isEmpty()) {
+				continue;
+			}
+			if (result.isEmpty()) {
+				result = value;
+			} else if (aggregate == Aggregate.MIN) {
+				result = Optional.of(Math.min(result.get(), value.get()));
+			} else if (aggregate == Aggregate.MAX) {
+				result = Optional.of(Math.max(result.get(), value.get()));
+			} else {
+				result = Optional.of(result.get() + value.get());
+			}
+		}
+		return result;
+	}
+	
+	private SQLQueryBuilder aggregateQuery(Aggregate aggregate, String column, List<String> where) {
+		DbTable dbTable = getDbTableAnnotation();
+		SQLQueryBuilder sql = SQLQueryBuilder.aggregateQuery(dbTable.name(), aggregate, column);
+		where.forEach(elt -> sql.add(elt));
+		return sql;
+	}
+	
+	private <R> Optional<R> fetchColumn(String column, List<String> where, List<Object> values, ResultSetMapper<R> mapper) {
+		checkNotSharded("fetchColumn");
+		DbTable dbTable = getDbTableAnnotation();
+		// Requete sql, sans passer par les entités ni le cache
+		SQLQueryBuilder sql = SQLQueryBuilder.selectQuery(dbTable.name());
+		sql.column(column);
+		where.forEach(elt -> sql.add(elt));
+		return Database.query(sql.toString(), values, mapper, dbTable.timeout());
+	}
+	
+	private Optional<T> getFromDbById(long id, List<Field> joins) {
 		DbTable dbTable = getDbTableAnnotation();
 		// Recupère l'id
 		Field idField = DatabaseUtils.getIdField(dbTable.entity());
@@ -170,9 +700,14 @@ public abstract class DatabaseTable<T extends Persistable> {
 		// Requete sql
 		SQLQueryBuilder sql = SQLQueryBuilder.selectQuery(dbTable.name());
 		sql.add(DatabaseUtils.getDbField(idField), id);
-		Optional<T> result = Database.query(sql.toString(), sql.getParams(), DatabaseMapper.objectMapper(dbTable));
-		// Return
-		return result;
+		if (!joins.isEmpty()) {
+			List<T> list = joinQuery(sql.toString(), sql.getParams(), "", joins);
+			return list.isEmpty() ? Optional.empty() : Optional.of(list.get(0));
+		}
+		if (shards > 0) {
+			return Shards.on(shardOf(id), () -> Database.query(sql.toString(), sql.getParams(), DatabaseMapper.<T>objectMapper(dbTable), dbTable.timeout()));
+		}
+		return Database.query(sql.toString(), sql.getParams(), DatabaseMapper.objectMapper(dbTable), dbTable.timeout());
 	}
 	
 	private List<T> getFromDbByField(String fieldname, Object value) {
@@ -180,12 +715,7 @@ public abstract class DatabaseTable<T extends Persistable> {
 		// Requete sql
 		SQLQueryBuilder sql = SQLQueryBuilder.selectQuery(dbTable.name());
 		sql.add(fieldname, value);
-		Optional<List<T>> result = Database.query(sql.toString(), sql.getParams(), DatabaseMapper.listMapper(dbTable));
-		// Return
-		if(result.isPresent()) {
-			return result.get();
-		}
-		return new ArrayList<>();
+		return gather(() -> Database.query(sql.toString(), sql.getParams(), DatabaseMapper.<T>listMapper(dbTable), dbTable.timeout()).orElse(new ArrayList<>()));
 	}
 	
 	private List<T> getWhereFromDb(List<String> where, List<Object> params) {
@@ -194,24 +724,71 @@ public abstract class DatabaseTable<T extends Persistable> {
 		SQLQueryBuilder sql = SQLQueryBuilder.selectQuery(dbTable.name());
 		where.forEach(elt -> sql.add(elt));
 		// Execution requete
-		Optional<List<T>> result = Database.query(sql.toString(), params, DatabaseMapper.listMapper(dbTable));
-		// Return
-		if(result.isPresent()) {
-			return result.get();
-		}
-		return new ArrayList<>();
+		return gather(() -> Database.query(sql.toString(), params, DatabaseMapper.<T>listMapper(dbTable), dbTable.timeout()).orElse(new ArrayList<>()));
 	}
 	
 	private List<T> getAllFromDb() {
 		DbTable dbTable = getDbTableAnnotation();
 		// Requete sql
 		SQLQueryBuilder sql = SQLQueryBuilder.selectQuery(dbTable.name());
-		Optional<List<T>> result = Database.query(sql.toString(), DatabaseMapper.listMapper(dbTable));
-		// Return
-		if(result.isPresent()) {
-			return result.get();
+		if (!declaredJoins.isEmpty()) {
+			return joinQuery(sql.toString(), sql.getParams(), "", declaredJoins);
 		}
-		return new ArrayList<>();	
+		return gather(() -> Database.query(sql.toString(), sql.getParams(), DatabaseMapper.<T>listMapper(dbTable), dbTable.timeout()).orElse(new ArrayList<>()));
+	}
+	
+	/**
+	 * Lit les entités et leurs liens joints en une seule requête
+	 * @param from Le select de la table
+	 * @param params
+	 * @param order Le tri du select de la table
+	 * @param joins Les champs liés à joindre
+	 * @return
+	 */
+	private List<T> joinQuery(String from, List<Object> params, String order, List<Field> joins) {
+		checkNotSharded("join fetch");
+		DbTable dbTable = getDbTableAnnotation();
+		List<SQLQueryBuilder.Join> tables = new ArrayList<>();
+		for (Field field : joins) {
+			DbTable linked = DatabaseUtils.getDatabaseTable(field).getDbTableAnnotation();
+			if (linked.sharding() != ShardStrategy.NONE) {
+				throw new IllegalStateException("Unable to join the sharded table " + linked.name());
+			}
+			String idColumn = DatabaseUtils.getDbField(DatabaseUtils.getIdField(linked.entity()));
+			tables.add(new SQLQueryBuilder.Join(linked.name(), DatabaseUtils.getDbField(field), idColumn, columnsOf(linked.entity())));
+		}
+		String sql = SQLQueryBuilder.joinQuery(from, columnsOf(dbTable.entity()), tables, order);
+		return Database.query(sql, params, DatabaseMapper.<T>joinMapper(dbTable, joins), dbTable.timeout()).orElse(new ArrayList<>());
+	}
+	
+	/**
+	 * Les liens lus par jointure
+	 * @param fetch JOIN pour tous les liens, SELECT pour aucun, null pour ceux déclarés avec DbLink.fetch
+	 * @return
+	 */
+	private List<Field> joinedLinks(Fetch fetch) {
+		List<Field> list = new ArrayList<>();
+		if (fetch == Fetch.SELECT) {
+			return list;
+		}
+		for (Field field : getDbTableAnnotation().entity().getFields()) {
+			if (DatabaseUtils.getDbField(field) != null && DatabaseUtils.isDbLink(field)
+					&& (fetch == Fetch.JOIN || field.getAnnotation(DbLink.class).fetch() == Fetch.JOIN)) {
+				list.add(field);
+			}
+		}
+		return list;
+	}
+	
+	private static List<String> columnsOf(Class<?> entity) {
+		List<String> columns = new ArrayList<>();
+		for (Field field : entity.getFields()) {
+			String column = DatabaseUtils.getDbField(field);
+			if (column != null) {
+				columns.add(column);
+			}
+		}
+		return columns;
 	}
 	
 	private void insert(T obj) throws DatabaseException {
@@ -221,82 +798,261 @@ public abstract class DatabaseTable<T extends Persistable> {
 		if (id == null) {
 			throw new IllegalStateException("Unable to find id field");
 		}
-		try {
-			// Création requete SQL
-			SQLQueryBuilder sql = SQLQueryBuilder.insertQuery(dbTable.name());
-			for(Field field : obj.getClass().getFields()) {
-				String dbField;
-				if ((dbField = DatabaseUtils.getDbField(field)) == null || DatabaseUtils.isDbId(field)) {
-					continue;
-				}
-				Object value = field.get(obj);
-				// Si c'est un lien vers une autre entité
-				if (value != null && DatabaseUtils.isDbLink(field)) {
-					// Recup class gestion de la table pour sauvegarder l'objet avant de l'ajouter à la requete
-					Persistable link = DatabaseUtils.getDbLinkObject(field, obj);
-					DatabaseTable dt = DatabaseUtils.getDatabaseTable(field);
-					dt.save(link);
-					value = link.getId();
-				}
-				sql.add(dbField, value);
-			}
-			// Execution de la requete
-			String dbIdName = DatabaseUtils.getDbField(id);
-			String attrIdName = id.getName();
-			Map<String, Object> newId = Database.insert(sql.toString(), sql.getParams(), new String[]{dbIdName});
-			if (newId.isEmpty()) {
+		// Création requete SQL
+		SQLQueryBuilder sql = insertQuery(obj);
+		String dbIdName = DatabaseUtils.getDbField(id);
+		// Id attribué en mémoire
+		if (sql.listField().contains(dbIdName)) {
+			if(!Database.execute(sql.toString(), sql.getParams(), dbTable.timeout())) {
 				throw new DatabaseException("Unable to save data");
 			}
-			// Récupération de l'id
-			Object val = newId.get(dbIdName);
-			if (val instanceof BigDecimal) {
-				BigDecimal b = (BigDecimal) val;
-				obj.getClass().getField(attrIdName).set(obj, b.longValue());
-			} else {
-				obj.getClass().getField(attrIdName).set(obj, val);
+			return;
+		}
+		// Execution de la requete
+		OptionalLong newId = Database.insertForId(sql.toString(), sql.getParams(), dbIdName, dbTable.timeout());
+		if (newId.isEmpty()) {
+			throw new DatabaseException("Unable to save data");
+		}
+		// Récupération de l'id
+		setId(obj, id, newId.getAsLong());
+	}
+	
+	private void insertAll(List<T> list) throws DatabaseException {
+		if (list.isEmpty()) {
+			return;
+		}
+		// Sans générateur d'id, la base donne l'id à chaque insertion
+		if (getIdGenerator() == null) {
+			for (T obj : list) {
+				insert(obj);
 			}
-		} catch (IllegalArgumentException | IllegalAccessException | NoSuchFieldException | SecurityException e) {
-			throw new IllegalStateException("Unable to save data", e);
+			return;
+		}
+		List<List<Object>> params = new ArrayList<>();
+		String sql = null;
+		for (T obj : list) {
+			SQLQueryBuilder query = insertQuery(obj);
+			sql = query.toString();
+			params.add(query.getParams());
+		}
+		if (!Database.executeBatch(sql, params, getDbTableAnnotation().timeout())) {
+			throw new DatabaseException("Unable to save data");
 		}
 	}
 	
-	private void update(T obj) throws DatabaseException {
+	private void updateAll(List<T> list, Map<Persistable, Long> versions) throws DatabaseException {
+		if (list.isEmpty()) {
+			return;
+		}
+		DbTable dbTable = getDbTableAnnotation();
+		if (versionField != null) {
+			// Un batch peut répondre SUCCESS_NO_INFO et masquer un conflit : une requête par entité
+			for (T obj : list) {
+				SQLQueryBuilder query = updateQuery(obj);
+				int count = Database.executeForCount(query.toString(), query.getParams(), dbTable.timeout()).orElseThrow(() -> new DatabaseException("Unable to save data"));
+				if (count != 1) {
+					// L'entité en cache est périmée, elle sera relue à la prochaine lecture
+					cache.invalidate(obj.getId());
+					throw new OptimisticLockException(dbTable.name(), obj.getId(), getVersion(obj));
+				}
+				versions.put(obj, getVersion(obj) + 1);
+			}
+			return;
+		}
+		List<List<Object>> params = new ArrayList<>();
+		String sql = null;
+		for (T obj : list) {
+			SQLQueryBuilder query = updateQuery(obj);
+			sql = query.toString();
+			params.add(query.getParams());
+		}
+		if (!Database.executeBatch(sql, params, dbTable.timeout())) {
+			throw new DatabaseException("Unable to save data");
+		}
+	}
+	
+	private SQLQueryBuilder insertQuery(T obj) {
+		DbTable dbTable = getDbTableAnnotation();
+		SQLQueryBuilder sql = columns(SQLQueryBuilder.insertQuery(dbTable.name()), obj);
+		IdGenerator generator = getIdGenerator();
+		if (generator != null) {
+			Field id = DatabaseUtils.getIdField(obj.getClass());
+			if (obj.getId() <= 0) {
+				setId(obj, id, generator.next());
+			}
+			sql.add(DatabaseUtils.getDbField(id), obj.getId());
+		}
+		return sql;
+	}
+	
+	private SQLQueryBuilder updateQuery(T obj) {
 		DbTable dbTable = getDbTableAnnotation();
 		// Récupération du champ id
 		Field id = DatabaseUtils.getIdField(obj.getClass());
 		if (id == null) {
 			throw new IllegalStateException("Unable to find id field");
 		}
+		SQLQueryBuilder sql = columns(SQLQueryBuilder.updateQuery(dbTable.name()), obj);
+		// Ajoute l'id
+		sql.addId(DatabaseUtils.getDbField(id), obj.getId());
+		// Verrouillage optimiste : la version lue est vérifiée et incrémentée
+		if (versionField != null) {
+			String version = DatabaseUtils.getDbField(versionField);
+			long current = getVersion(obj);
+			sql.add(version, current + 1);
+			sql.addVersion(version, current);
+		}
+		return sql;
+	}
+	
+	private SQLQueryBuilder columns(SQLQueryBuilder sql, T obj) {
 		try {
-			// Création requete SQL
-			SQLQueryBuilder sql = SQLQueryBuilder.updateQuery(dbTable.name());
 			for(Field field : obj.getClass().getFields()) {
 				String dbField;
 				if ((dbField = DatabaseUtils.getDbField(field)) == null || DatabaseUtils.isDbId(field)) {
 					continue;
 				}
 				Object value = field.get(obj);
-				// Si c'est un lien vers une autre entité
+				// Si c'est un lien vers une autre entité on garde son id
 				if (value != null && DatabaseUtils.isDbLink(field)) {
-					// Recup class gestion de la table pour sauvegarder l'objet avant de l'ajouter à la requete
-					Persistable link = DatabaseUtils.getDbLinkObject(field, obj);
-					DatabaseTable dt = DatabaseUtils.getDatabaseTable(field);
-					dt.save(link);
-					value = link.getId();
+					value = DatabaseUtils.getDbLinkObject(field, obj).getId();
 				}
 				sql.add(dbField, value);
 			}
-			// Ajoute l'id
-			sql.addId(DatabaseUtils.getDbField(id), id.get(obj));
-			// Execution de la requete
-			if(!Database.execute(sql.toString(), sql.getParams())) {
-				throw new DatabaseException("Unable to save data");
-			}
+			return sql;
 		} catch (IllegalArgumentException | IllegalAccessException | SecurityException e) {
 			throw new IllegalStateException("Unable to save data", e);
 		}
 	}
 	
+	private Set<Long> existingIds(List<T> list) {
+		DbTable dbTable = getDbTableAnnotation();
+		String idColumn = DatabaseUtils.getDbField(DatabaseUtils.getIdField(dbTable.entity()));
+		List<Long> ids = new ArrayList<>();
+		list.forEach(obj -> ids.add(obj.getId()));
+		Criteria criteria = Criteria.where().in(idColumn, ids);
+		String sql = SQLQueryBuilder.criteriaQuery(dbTable.name(), idColumn, criteria, Database.getDialect());
+		long[] existing = Database.query(sql, criteria.getParams(), ColumnMapper.longColumn(), dbTable.timeout()).orElse(new long[0]);
+		Set<Long> result = new HashSet<>();
+		for (long id : existing) {
+			result.add(id);
+		}
+		return result;
+	}
+	
+	private int shardOf(long id) {
+		DbTable dbTable = getDbTableAnnotation();
+		return dbTable.sharding().shardOf(id, shards, dbTable.shardRange());
+	}
+	
+	private void onShard(int shard, ShardWrite action) throws DatabaseException {
+		jasipe.db.Database previous = Database.useShard(Shards.get(shard));
+		try {
+			action.run();
+		} finally {
+			Database.useShard(previous);
+		}
+	}
+	
+	/**
+	 * Execute une lecture sur la base de la table, en parallèle sur tous les shards pour une table répartie
+	 * @param query
+	 * @return Les résultats de tous les shards, dans l'ordre des shards
+	 */
+	private List<T> gather(Supplier<List<T>> query) {
+		if (shards == 0) {
+			return query.get();
+		}
+		List<T> list = new ArrayList<>();
+		Shards.scatter(query).forEach(list::addAll);
+		return list;
+	}
+	
+	private long sum(Supplier<Long> query) {
+		if (shards == 0) {
+			return query.get();
+		}
+		return Shards.scatter(query).stream().mapToLong(Long::longValue).sum();
+	}
+	
+	private boolean any(Supplier<Boolean> query) {
+		if (shards == 0) {
+			return query.get();
+		}
+		return Shards.scatter(query).contains(true);
+	}
+	
+	private void checkNotSharded(String operation) {
+		if (shards > 0) {
+			throw new IllegalStateException(operation + " is not supported on the sharded table " + getDbTableAnnotation().name());
+		}
+	}
+	
+	private synchronized IdGenerator getIdGenerator() {
+		if (!idGeneratorResolved) {
+			DbTable dbTable = getDbTableAnnotation();
+			Field idField = DatabaseUtils.getIdField(dbTable.entity());
+			if (idField == null) {
+				throw new IllegalStateException("Unable to find id field");
+			}
+			if (shards == 0) {
+				idGenerator = IdGenerators.create(dbTable, idField);
+			} else {
+				// Les ids viennent de la base principale, les blocs commencent après le plus grand id de tous les shards
+				long maxId = Shards.scatter(() -> IdGenerators.maxId(dbTable, idField)).stream().mapToLong(Long::longValue).max().orElse(0);
+				idGenerator = IdGenerators.create(dbTable, idField, maxId);
+				if (idGenerator == null) {
+					throw new IllegalStateException("The sharded table " + dbTable.name() + " needs a HILO or SEQUENCE id");
+				}
+			}
+			idGeneratorResolved = true;
+		}
+		return idGenerator;
+	}
+	
+	private void setId(T obj, Field id, long val) {
+		try {
+			Class<?> type = id.getType();
+			if (type == long.class) {
+				id.setLong(obj, val);
+			} else if (type == int.class) {
+				id.setInt(obj, (int) val);
+			} else if (type == Integer.class) {
+				id.set(obj, (int) val);
+			} else {
+				id.set(obj, val);
+			}
+		} catch (IllegalArgumentException | IllegalAccessException e) {
+			throw new IllegalStateException("Unable to save data", e);
+		}
+	}
+	
+	private long getVersion(T obj) {
+		try {
+			Object version = versionField.get(obj);
+			return (version == null) ? 0 : ((Number) version).longValue();
+		} catch (IllegalArgumentException | IllegalAccessException e) {
+			throw new IllegalStateException("Unable to read the version", e);
+		}
+	}
+	
+	private void setVersion(T obj, long val) {
+		try {
+			Class<?> type = versionField.getType();
+			if (type == long.class) {
+				versionField.setLong(obj, val);
+			} else if (type == int.class) {
+				versionField.setInt(obj, (int) val);
+			} else if (type == Integer.class) {
+				versionField.set(obj, (int) val);
+			} else {
+				versionField.set(obj, val);
+			}
+		} catch (IllegalArgumentException | IllegalAccessException e) {
+			throw new IllegalStateException("Unable to save data", e);
+		}
+	}
+	
 	private void delete(long id) throws DatabaseException {
 		DbTable dbTable = getDbTableAnnotation();
 		// Récupération du champ id
@@ -308,9 +1064,15 @@ public abstract class DatabaseTable<T extends Persistable> {
 		SQLQueryBuilder sql = SQLQueryBuilder.deleteQuery(dbTable.name());
 		sql.addId(DatabaseUtils.getDbField(idField), id);
 		// Execution de la requete
-		if (!Database.execute(sql.toString(), sql.getParams())) {
+		if (!Database.execute(sql.toString(), sql.getParams(), dbTable.timeout())) {
 			throw new DatabaseException("Unable to delete data");
 		}
 	}
+	
+	private interface ShardWrite {
+		
+		void run() throws DatabaseException;
+		
+	}
 
 }
@@ -7,6 +7,7 @@ import java.lang.reflect.InvocationTargetException;
 import db.annotation.DbField;
 import db.annotation.DbId;
 import db.annotation.DbLink;
+import db.annotation.DbVersion;
 
 public class DatabaseUtils {
 	
@@ -33,6 +34,10 @@ public class DatabaseUtils {
 		return isAnnotation(f, DbField.class);
 	}
 	
+	public static boolean isDbVersion(Field f) {
+		return isAnnotation(f, DbVersion.class);
+	}
+	
 	public static String getDbField(Field f) {
 		if (!isDbField(f)) {
 			return null;
@@ -67,6 +72,19 @@ public class DatabaseUtils {
 		return null;
 	}
 	
+	public static Field getVersionField(Class<?> clazz) {
+		for(Field f : clazz.getFields()) {
+			if (isDbField(f) && isDbVersion(f)) {
+				Class<?> type = f.getType();
+				if (type != long.class && type != Long.class && type != int.class && type != Integer.class) {
+					throw new IllegalStateException("The version field " + f.getName() + " must be a long or an int");
+				}
+				return f;
+			}
+		}
+		return null;
+	}
+	
 	public static <T extends Persistable> Persistable getDbLinkObject(Field f, T obj) {
 		if (!isDbLink(f)) {
 			return null;
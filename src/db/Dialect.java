@@ -0,0 +1,78 @@
+package db;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+public enum Dialect {
+
+	DERBY,
+	SQLITE,
+	OTHER;
+
+	public static Dialect of(Connection db) {
+		try {
+			String product = db.getMetaData().getDatabaseProductName().toLowerCase();
+			if (product.contains("derby")) {
+				return DERBY;
+			}
+			if (product.contains("sqlite")) {
+				return SQLITE;
+			}
+			return OTHER;
+		} catch (SQLException e) {
+			return OTHER;
+		}
+	}
+
+	public String identityColumn(String name) {
+		if (this == SQLITE) {
+			return name + " INTEGER PRIMARY KEY AUTOINCREMENT";
+		}
+		return name + " BIGINT NOT NULL GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY";
+	}
+
+	/**
+	 * Clause limitant le nombre de lignes, la limite est un paramètre
+	 * @return
+	 */
+	public String limit() {
+		if (this == SQLITE) {
+			return " Limit ?";
+		}
+		return " Fetch First ? Rows Only";
+	}
+
+	public String columnType(Class<?> type) {
+		if (type == long.class || type == Long.class) {
+			return "BIGINT";
+		}
+		if (type == int.class || type == Integer.class || type == short.class || type == Short.class || type == byte.class || type == Byte.class) {
+			return "INTEGER";
+		}
+		if (type == double.class || type == Double.class || type == float.class || type == Float.class) {
+			return "DOUBLE";
+		}
+		if (type == boolean.class || type == Boolean.class) {
+			return (this == SQLITE) ? "INTEGER" : "BOOLEAN";
+		}
+		if (type == BigDecimal.class) {
+			return "DECIMAL(31,10)";
+		}
+		if (type == java.sql.Date.class || type == java.time.LocalDate.class) {
+			return "DATE";
+		}
+		if (type == java.sql.Timestamp.class || type == java.util.Date.class || type == java.time.LocalDateTime.class) {
+			return "TIMESTAMP";
+		}
+		if (type == byte[].class) {
+			return "BLOB";
+		}
+		// Lien vers une autre entité
+		if (DatabaseUtils.isPersistable(type)) {
+			return "BIGINT";
+		}
+		return "VARCHAR(255)";
+	}
+
+}
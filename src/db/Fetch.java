@@ -0,0 +1,15 @@
+package db;
+
+public enum Fetch {
+
+	/**
+	 * L'entité liée est chargée par son id, depuis le cache ou avec une requête de plus
+	 */
+	SELECT,
+
+	/**
+	 * L'entité liée est lue dans la même requête que l'entité qui la référence, avec un Left Join
+	 */
+	JOIN
+
+}
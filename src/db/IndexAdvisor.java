@@ -0,0 +1,105 @@
+package db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import db.annotation.DbTable;
+
+/**
+ * Compte les colonnes filtrées par getByField, getWhere, count et exists sur chaque table
+ * pour signaler les filtres fréquents sans index (clef index.advisor du fichier de properties)
+ */
+public class IndexAdvisor {
+
+	private static final Logger LOGGER = Logger.getLogger(IndexAdvisor.class.getName());
+	private static final boolean ENABLED = DatabaseProperties.getBool("index.advisor", false);
+
+	private static final Map<String, DbTable> tables = new ConcurrentHashMap<>();
+	private static final Map<String, Map<String, LongAdder>> hits = new ConcurrentHashMap<>();
+
+	public static boolean isEnabled() {
+		return ENABLED;
+	}
+
+	public static void record(DbTable dbTable, Collection<String> columns) {
+		if (!ENABLED || columns.isEmpty()) {
+			return;
+		}
+		tables.putIfAbsent(dbTable.name(), dbTable);
+		Map<String, LongAdder> tableHits = hits.computeIfAbsent(dbTable.name(), key -> new ConcurrentHashMap<>());
+		for (String column : columns) {
+			tableHits.computeIfAbsent(column.toUpperCase(), key -> new LongAdder()).increment();
+		}
+	}
+
+	/**
+	 * Les colonnes filtrées au moins minHits fois qui ne sont la première colonne d'aucun index
+	 * Les index déclarés avec DbIndex et ceux présents en base sont pris en compte
+	 * @param minHits
+	 * @return table.colonne -> nombre de requêtes, de la plus filtrée à la moins filtrée
+	 */
+	public static Map<String, Long> unindexed(long minHits) {
+		List<Map.Entry<String, Long>> found = new ArrayList<>();
+		SchemaChecker checker = new SchemaChecker(Database.getDb(), false);
+		hits.forEach((table, columns) -> {
+			Set<String> indexed = indexedColumns(tables.get(table), checker);
+			columns.forEach((column, count) -> {
+				long value = count.sum();
+				if (value >= minHits && !indexed.contains(column)) {
+					found.add(Map.entry(table + "." + column, value));
+				}
+			});
+		});
+		found.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+		Map<String, Long> result = new LinkedHashMap<>();
+		found.forEach(entry -> result.put(entry.getKey(), entry.getValue()));
+		return result;
+	}
+
+	/**
+	 * Ecrit dans le log les filtres fréquents sans index
+	 * @param minHits
+	 */
+	public static void report(long minHits) {
+		Map<String, Long> unindexed = unindexed(minHits);
+		if (unindexed.isEmpty()) {
+			LOGGER.info("No unindexed filter column used more than " + minHits + " times");
+			return;
+		}
+		unindexed.forEach((column, count) -> LOGGER.warning("Column " + column + " is filtered " + count + " times without index, add @DbIndex on its field"));
+	}
+
+	public static Map<String, Map<String, Long>> getHits() {
+		Map<String, Map<String, Long>> result = new HashMap<>();
+		hits.forEach((table, columns) -> {
+			Map<String, Long> counts = new HashMap<>();
+			columns.forEach((column, count) -> counts.put(column, count.sum()));
+			result.put(table, counts);
+		});
+		return result;
+	}
+
+	public static void clear() {
+		hits.clear();
+	}
+
+	private static Set<String> indexedColumns(DbTable dbTable, SchemaChecker checker) {
+		Set<String> indexed = new HashSet<>(checker.leadingIndexColumns(dbTable.name()));
+		for (TableIndex index : TableIndex.of(dbTable)) {
+			indexed.add(index.getColumns().get(0).toUpperCase());
+		}
+		// L'id est la clef primaire
+		indexed.add(DatabaseUtils.getDbField(DatabaseUtils.getIdField(dbTable.entity())).toUpperCase());
+		return indexed;
+	}
+
+}
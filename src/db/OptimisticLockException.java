@@ -0,0 +1,37 @@
+package db;
+
+/**
+ * Mise à jour refusée : la ligne a été modifiée ou supprimée depuis la lecture de l'entité
+ */
+public class OptimisticLockException extends DatabaseException {
+
+	private static final long serialVersionUID = -3021784591845162407L;
+	
+	private final String table;
+	private final long id;
+	private final long version;
+
+	public OptimisticLockException(String table, long id, long version) {
+		super("The row " + id + " of " + table + " is no longer at version " + version);
+		this.table = table;
+		this.id = id;
+		this.version = version;
+	}
+
+	public String getTable() {
+		return table;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * La version attendue par la mise à jour
+	 * @return
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+}
@@ -0,0 +1,83 @@
+package db;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sauvegarde d'une liste d'entités en deux temps : les écritures en base, puis le cache une fois la transaction validée
+ */
+class PendingSave implements WriteQueue.Write {
+
+	private final SaveGraph graph = new SaveGraph();
+	private final Map<Persistable, Long> versions = new IdentityHashMap<>();
+	// Entités insérées, leur id est retiré si l'insertion est annulée
+	private final Map<Persistable, DatabaseTable<?>> created = new IdentityHashMap<>();
+
+	public PendingSave(List<? extends Persistable> list, DatabaseTable<?> table) {
+		list.forEach(obj -> graph.add(obj, table));
+		for (Map<DatabaseTable<?>, List<Persistable>> level : graph.getLevels()) {
+			level.forEach((dt, objs) -> objs.stream().filter(obj -> obj.getId() <= 0).forEach(obj -> created.put(obj, dt)));
+		}
+	}
+
+	/**
+	 * Nombre d'entités à écrire, entités liées comprises
+	 * @return
+	 */
+	public int size() {
+		return graph.size();
+	}
+
+	@Override
+	public void write() throws DatabaseException {
+		// Une écriture annulée puis rejouée repart des versions lues et des entités sans id
+		versions.clear();
+		unsaved();
+		for (Map<DatabaseTable<?>, List<Persistable>> level : graph.getLevels()) {
+			for (Map.Entry<DatabaseTable<?>, List<Persistable>> entry : level.entrySet()) {
+				DatabaseTable dt = entry.getKey();
+				dt.write(entry.getValue(), versions);
+			}
+		}
+	}
+
+	/**
+	 * Fin de la transaction qui contient les écritures
+	 * @param committed
+	 */
+	public void completed(boolean committed) {
+		if (committed) {
+			written();
+			return;
+		}
+		for (Map<DatabaseTable<?>, List<Persistable>> level : graph.getLevels()) {
+			for (Map.Entry<DatabaseTable<?>, List<Persistable>> entry : level.entrySet()) {
+				DatabaseTable dt = entry.getKey();
+				dt.discarded(entry.getValue());
+			}
+		}
+		// Le bloc d'ids peut être redonné, les ids annulés ne doivent pas rester sur les entités
+		unsaved();
+	}
+
+	@Override
+	public void discarded() {
+		completed(false);
+	}
+
+	@Override
+	public void written() {
+		for (Map<DatabaseTable<?>, List<Persistable>> level : graph.getLevels()) {
+			for (Map.Entry<DatabaseTable<?>, List<Persistable>> entry : level.entrySet()) {
+				DatabaseTable dt = entry.getKey();
+				dt.written(entry.getValue(), versions);
+			}
+		}
+	}
+
+	private void unsaved() {
+		created.forEach((obj, dt) -> ((DatabaseTable) dt).unsaved(obj));
+	}
+
+}
@@ -5,6 +5,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SQLQueryBuilder {
 	
@@ -12,11 +13,19 @@ public class SQLQueryBuilder {
 	private static final int INSERT_QUERY = 1;
 	private static final int UPDATE_QUERY = 2;
 	private static final int DELETE_QUERY = 3;
+	private static final int MAX_CACHED_QUERIES = 1000;
+	private static final Map<String, String> CRITERIA_CACHE = new ConcurrentHashMap<>();
 	
 	private int queryType;
 	private String table;
 	private Map<String, Object> data = new LinkedHashMap<>();
 	private String idKey;
+	private String versionKey;
+	private Object versionValue;
+	private List<String> columns = new ArrayList<>();
+	private String groupBy;
+	private Criteria criteria;
+	private Dialect dialect;
 	
 	private SQLQueryBuilder(int queryType, String table) {
 		this.queryType = queryType;
@@ -36,12 +45,47 @@ public class SQLQueryBuilder {
 		return this;
 	}
 	
+	public SQLQueryBuilder column(String column) {
+		columns.add(column);
+		return this;
+	}
+	
+	public SQLQueryBuilder columns(List<String> columns) {
+		this.columns.addAll(columns);
+		return this;
+	}
+	
+	public SQLQueryBuilder groupBy(String column) {
+		// La colonne de regroupement est la première colonne du résultat
+		columns.add(0, column);
+		groupBy = column;
+		return this;
+	}
+	
+	public SQLQueryBuilder criteria(Criteria criteria, Dialect dialect) {
+		this.criteria = criteria;
+		this.dialect = dialect;
+		return this;
+	}
+	
 	public SQLQueryBuilder addId(String idName, Object value) {
 		add(idName, value);
 		idKey = idName;
 		return this;
 	}
 	
+	/**
+	 * Mise à jour seulement si la colonne de version a toujours la valeur lue
+	 * @param versionName
+	 * @param expected
+	 * @return
+	 */
+	public SQLQueryBuilder addVersion(String versionName, Object expected) {
+		versionKey = versionName;
+		versionValue = expected;
+		return this;
+	}
+	
 	public SQLQueryBuilder remove(String fieldName) {
 		if (data.containsKey(fieldName)) {
 			data.remove(fieldName);
@@ -76,6 +120,11 @@ public class SQLQueryBuilder {
 	
 	public List<Object> getParams() {
 		List<Object> result = new ArrayList<>();
+		if (criteria != null) {
+			result.addAll(data.values());
+			result.addAll(criteria.getParams());
+			return result;
+		}
 		data.forEach((key, val) -> {
 			if (idKey != null) {
 				if (!idKey.equals(key)) {
@@ -88,6 +137,9 @@ public class SQLQueryBuilder {
 		if (idKey != null) {
 			result.add(data.get(idKey));
 		}
+		if (versionKey != null) {
+			result.add(versionValue);
+		}
 		return result;
 	}
 	
@@ -104,6 +156,80 @@ public class SQLQueryBuilder {
 		return new SQLQueryBuilder(SELECT_QUERY, table);
 	}
 	
+	public static SQLQueryBuilder aggregateQuery(String table, Aggregate aggregate, String column) {
+		return new SQLQueryBuilder(SELECT_QUERY, table).column(aggregate.sql(column));
+	}
+	
+	public static SQLQueryBuilder existsQuery(String table) {
+		return new SQLQueryBuilder(SELECT_QUERY, table).column("1");
+	}
+	
+	/**
+	 * SQL d'un select avec critères, mis en cache selon la forme des critères
+	 * @param table
+	 * @param select Les colonnes ou l'agrégat sélectionné
+	 * @param criteria
+	 * @param dialect
+	 * @return
+	 */
+	public static String criteriaQuery(String table, String select, Criteria criteria, Dialect dialect) {
+		String key = table + "|" + select + "|" + dialect + "|" + criteria.getShape();
+		String sql = CRITERIA_CACHE.get(key);
+		if (sql == null) {
+			sql = selectQuery(table).column(select).criteria(criteria, dialect).getSQL();
+			if (CRITERIA_CACHE.size() >= MAX_CACHED_QUERIES) {
+				CRITERIA_CACHE.clear();
+			}
+			CRITERIA_CACHE.put(key, sql);
+		}
+		return sql;
+	}
+	
+	/**
+	 * Select d'une table et de ses entités liées en une seule requête, chaque lien est joint avec un Left Join
+	 * Les colonnes de la table gardent leur nom, celles du lien n sont préfixées par joinAlias(n)
+	 * @param from Le select de la table, avec ses critères, son tri et sa limite
+	 * @param columns Les colonnes de la table
+	 * @param joins
+	 * @param order Le tri du select de la table, répété sur le résultat de la jointure
+	 * @return
+	 */
+	public static String joinQuery(String from, List<String> columns, List<Join> joins, String order) {
+		StringBuilder sql = new StringBuilder("Select ");
+		boolean first = true;
+		for (String column : columns) {
+			if (!first) {
+				sql.append(", ");
+			}
+			sql.append("t0.").append(column).append(" As ").append(column);
+			first = false;
+		}
+		for (int i = 0; i < joins.size(); i++) {
+			String alias = "j" + i;
+			for (String column : joins.get(i).columns) {
+				sql.append(", ").append(alias).append(".").append(column).append(" As ").append(joinAlias(i)).append(column);
+			}
+		}
+		sql.append(" From (").append(from).append(") t0");
+		for (int i = 0; i < joins.size(); i++) {
+			Join join = joins.get(i);
+			String alias = "j" + i;
+			sql.append(" Left Join ").append(join.table).append(" ").append(alias);
+			sql.append(" On ").append(alias).append(".").append(join.idColumn).append(" = t0.").append(join.linkColumn);
+		}
+		sql.append(order);
+		return sql.toString();
+	}
+	
+	/**
+	 * Préfixe des colonnes du lien n dans le résultat de joinQuery
+	 * @param n
+	 * @return
+	 */
+	public static String joinAlias(int n) {
+		return "j" + n + "_";
+	}
+	
 	public static SQLQueryBuilder insertQuery(String table) {
 		return new SQLQueryBuilder(INSERT_QUERY, table);
 	}
@@ -118,7 +244,9 @@ public class SQLQueryBuilder {
 	
 	private String select() {
 		StringBuilder sql = new StringBuilder();
-		sql.append("Select * From ");
+		sql.append("Select ");
+		sql.append(columns.isEmpty() ? "*" : String.join(", ", columns));
+		sql.append(" From ");
 		sql.append(table);
 		sql.append(" Where 1=1");
 		data.forEach((key, val) -> {
@@ -126,6 +254,16 @@ public class SQLQueryBuilder {
 			sql.append(key);
 			sql.append(" = ?");
 		});
+		if (criteria != null) {
+			sql.append(criteria.whereSQL());
+		}
+		if (groupBy != null) {
+			sql.append(" Group By ");
+			sql.append(groupBy);
+		}
+		if (criteria != null) {
+			sql.append(criteria.orderSQL(dialect));
+		}
 		return sql.toString();
 	}
 	
@@ -176,6 +314,11 @@ public class SQLQueryBuilder {
 		sql.append(" Where ");
 		sql.append(idKey);
 		sql.append(" = ?");
+		if (versionKey != null) {
+			sql.append(" And ");
+			sql.append(versionKey);
+			sql.append(" = ?");
+		}
 		return sql.toString();
 	}
 	
@@ -200,5 +343,30 @@ public class SQLQueryBuilder {
 		sql.append(" = ?");
 		return sql.toString();
 	}
+	
+	/**
+	 * Table liée par joinQuery
+	 */
+	public static class Join {
+		
+		private final String table;
+		private final String linkColumn;
+		private final String idColumn;
+		private final List<String> columns;
+		
+		/**
+		 * @param table La table liée
+		 * @param linkColumn La colonne de la table qui contient l'id du lien
+		 * @param idColumn La colonne id de la table liée
+		 * @param columns Les colonnes de la table liée
+		 */
+		public Join(String table, String linkColumn, String idColumn, List<String> columns) {
+			this.table = table;
+			this.linkColumn = linkColumn;
+			this.idColumn = idColumn;
+			this.columns = columns;
+		}
+		
+	}
 
 }
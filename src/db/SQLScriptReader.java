@@ -0,0 +1,134 @@
+package db;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lecture en flux d'un script SQL, instruction par instruction
+ * Les ; dans les chaines, les identifiants entre guillemets et les commentaires sont ignorés
+ */
+public class SQLScriptReader implements Iterator<String>, Closeable {
+
+	private final BufferedReader reader;
+	private String next = null;
+	private boolean end = false;
+
+	public SQLScriptReader(Reader reader) {
+		this.reader = (reader instanceof BufferedReader) ? (BufferedReader) reader : new BufferedReader(reader);
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next == null && !end) {
+			try {
+				next = readStatement();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Unable to read SQL script", e);
+			}
+			end = (next == null);
+		}
+		return next != null;
+	}
+
+	@Override
+	public String next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		String result = next;
+		next = null;
+		return result;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	private String readStatement() throws IOException {
+		StringBuilder sql = new StringBuilder();
+		int c;
+		while ((c = reader.read()) != -1) {
+			switch (c) {
+				case '\'':
+				case '"':
+					// Chaine ou identifiant, on recopie jusqu'au délimiteur fermant ('' et "" sont des échappements)
+					sql.append((char) c);
+					readQuoted(sql, c);
+					break;
+				case '-':
+					reader.mark(1);
+					if (reader.read() == '-') {
+						skipLine();
+						sql.append(' ');
+					} else {
+						reader.reset();
+						sql.append('-');
+					}
+					break;
+				case '/':
+					reader.mark(1);
+					if (reader.read() == '*') {
+						skipBlockComment();
+						sql.append(' ');
+					} else {
+						reader.reset();
+						sql.append('/');
+					}
+					break;
+				case ';':
+					// Fin de l'instruction
+					if (!sql.toString().trim().isEmpty()) {
+						return sql.toString().trim();
+					}
+					sql.setLength(0);
+					break;
+				default:
+					sql.append((char) c);
+			}
+		}
+		// Dernière instruction sans ;
+		String last = sql.toString().trim();
+		return last.isEmpty() ? null : last;
+	}
+
+	private void readQuoted(StringBuilder sql, int quote) throws IOException {
+		int c;
+		while ((c = reader.read()) != -1) {
+			sql.append((char) c);
+			if (c == quote) {
+				reader.mark(1);
+				if (reader.read() == quote) {
+					sql.append((char) quote);
+				} else {
+					reader.reset();
+					return;
+				}
+			}
+		}
+	}
+
+	private void skipLine() throws IOException {
+		int c;
+		while ((c = reader.read()) != -1 && c != '\n') {
+			// Ignore le commentaire
+		}
+	}
+
+	private void skipBlockComment() throws IOException {
+		int c;
+		int previous = -1;
+		while ((c = reader.read()) != -1) {
+			if (previous == '*' && c == '/') {
+				return;
+			}
+			previous = c;
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+package db;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import db.annotation.DbLink;
+
+/**
+ * Ordre d'écriture d'un graphe d'entités
+ * Chaque entité est visitée une seule fois, les entités liées sont écrites avant celles qui les référencent
+ * et les entités d'un même niveau sont regroupées par table
+ */
+class SaveGraph {
+
+	private final Map<Persistable, Integer> levels = new IdentityHashMap<>();
+	private final Set<Persistable> visiting = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final List<Map<DatabaseTable<?>, List<Persistable>>> plan = new ArrayList<>();
+
+	public void add(Persistable obj, DatabaseTable<?> table) {
+		visit(obj, table);
+	}
+
+	/**
+	 * Nombre d'entités à écrire
+	 * @return
+	 */
+	public int size() {
+		return levels.size();
+	}
+
+	/**
+	 * Les entités à écrire par niveau, les liens en premier
+	 * @return
+	 */
+	public List<Map<DatabaseTable<?>, List<Persistable>>> getLevels() {
+		return plan;
+	}
+
+	private int visit(Persistable obj, DatabaseTable<?> table) {
+		Integer level = levels.get(obj);
+		if (level != null) {
+			return level;
+		}
+		// Cycle entre entités : le lien est écrit avec l'id connu à ce moment, impossible pour une entité pas encore insérée
+		if (!visiting.add(obj)) {
+			if (obj.getId() <= 0) {
+				throw new IllegalStateException("Unable to save a cycle of links through the new entity " + obj.getClass().getName() + ", save one of them first");
+			}
+			return -1;
+		}
+		int lvl = 0;
+		for (Field field : obj.getClass().getFields()) {
+			if (DatabaseUtils.getDbField(field) == null || !DatabaseUtils.isDbLink(field)) {
+				continue;
+			}
+			Persistable link = DatabaseUtils.getDbLinkObject(field, obj);
+			if (link != null && cascade(field, link)) {
+				lvl = Math.max(lvl, visit(link, DatabaseUtils.getDatabaseTable(field)) + 1);
+			}
+		}
+		visiting.remove(obj);
+		levels.put(obj, lvl);
+		while (plan.size() <= lvl) {
+			plan.add(new LinkedHashMap<>());
+		}
+		plan.get(lvl).computeIfAbsent(table, key -> new ArrayList<>()).add(obj);
+		return lvl;
+	}
+
+	private static boolean cascade(Field field, Persistable link) {
+		switch (field.getAnnotation(DbLink.class).cascade()) {
+			case SAVE:
+				return true;
+			case SAVE_IF_NEW:
+				return link.getId() <= 0;
+			default:
+				return false;
+		}
+	}
+
+}
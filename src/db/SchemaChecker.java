@@ -0,0 +1,254 @@
+package db;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import db.annotation.DbTable;
+
+/**
+ * Vérifie avec DatabaseMetaData que les tables et colonnes des entités existent
+ * Les métadonnées sont lues en une seule passe et le résultat est mis en cache par base
+ */
+public class SchemaChecker {
+
+	private static final Logger LOGGER = Logger.getLogger(SchemaChecker.class.getName());
+	private static final Set<String> VERIFIED = ConcurrentHashMap.newKeySet();
+
+	private final Connection db;
+	private final boolean createTable;
+
+	public SchemaChecker(Connection db, boolean createTable) {
+		this.db = db;
+		this.createTable = createTable;
+	}
+
+	/**
+	 * Vérifie toutes les tables
+	 * @param tables Les classes DatabaseTable annotées avec DbTable
+	 * @return true si toutes les tables et colonnes existent (après création éventuelle)
+	 */
+	public boolean check(List<Class<?>> tables) {
+		List<DbTable> toCheck = new ArrayList<>();
+		String url = getUrl();
+		for (Class<?> clazz : tables) {
+			if (!clazz.isAnnotationPresent(DbTable.class)) {
+				throw new IllegalStateException("Unable ton find DbTable annotation on " + clazz.getName());
+			}
+			DbTable dbTable = clazz.getAnnotation(DbTable.class);
+			if (!VERIFIED.contains(url + "#" + dbTable.name().toUpperCase())) {
+				toCheck.add(dbTable);
+			}
+		}
+		if (toCheck.isEmpty()) {
+			return true;
+		}
+		try {
+			Map<String, Set<String>> schema = readSchema();
+			Dialect dialect = Dialect.of(db);
+			boolean result = true;
+			for (DbTable dbTable : toCheck) {
+				if (checkTable(dbTable, schema.get(dbTable.name().toUpperCase()), dialect)) {
+					VERIFIED.add(url + "#" + dbTable.name().toUpperCase());
+				} else {
+					result = false;
+				}
+			}
+			return result;
+		} catch (SQLException e) {
+			LOGGER.severe("Unable to check the database schema: " + e.getMessage());
+			return false;
+		}
+	}
+
+	public boolean tableExists(String table) {
+		try (ResultSet rs = db.getMetaData().getTables(null, null, null, new String[]{"TABLE"})) {
+			while (rs.next()) {
+				if (table.equalsIgnoreCase(rs.getString("TABLE_NAME"))) {
+					return true;
+				}
+			}
+			return false;
+		} catch (SQLException e) {
+			LOGGER.warning(e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Les colonnes par lesquelles commence un index existant de la table
+	 * @param table
+	 * @return Les noms de colonnes en majuscules
+	 */
+	public Set<String> leadingIndexColumns(String table) {
+		Set<String> columns = new HashSet<>();
+		try {
+			readIndexes(table).forEach((name, indexColumns) -> columns.add(indexColumns.get(0)));
+		} catch (SQLException e) {
+			LOGGER.warning(e.getMessage());
+		}
+		return columns;
+	}
+
+	public static void clearCache() {
+		VERIFIED.clear();
+	}
+
+	private boolean checkTable(DbTable dbTable, Set<String> columns, Dialect dialect) throws SQLException {
+		// Table manquante
+		if (columns == null) {
+			if (!createTable) {
+				LOGGER.warning("Table " + dbTable.name() + " is missing");
+				return false;
+			}
+			LOGGER.info("Creating table " + dbTable.name());
+			execute(createTableSQL(dbTable, dialect));
+			return checkIndexes(dbTable, true);
+		}
+		// Colonnes manquantes
+		boolean result = true;
+		for (Field field : dbTable.entity().getFields()) {
+			String dbField = DatabaseUtils.getDbField(field);
+			if (dbField == null || columns.contains(dbField.toUpperCase())) {
+				continue;
+			}
+			if (createTable && !DatabaseUtils.isDbId(field)) {
+				LOGGER.info("Adding column " + dbField + " in table " + dbTable.name());
+				execute("Alter Table " + dbTable.name() + " Add Column " + dbField + " " + dialect.columnType(field.getType()));
+			} else {
+				LOGGER.warning("Column " + dbField + " is missing in table " + dbTable.name());
+				result = false;
+			}
+		}
+		return result && checkIndexes(dbTable, false);
+	}
+
+	/**
+	 * Vérifie les index déclarés avec DbIndex, les index manquants sont créés si createTable
+	 * @param dbTable
+	 * @param created Si la table vient d'être créée, elle n'a encore aucun index
+	 * @return
+	 * @throws SQLException
+	 */
+	private boolean checkIndexes(DbTable dbTable, boolean created) throws SQLException {
+		List<TableIndex> indexes = TableIndex.of(dbTable);
+		if (indexes.isEmpty()) {
+			return true;
+		}
+		Map<String, List<String>> existing = created ? new HashMap<>() : readIndexes(dbTable.name());
+		boolean result = true;
+		for (TableIndex index : indexes) {
+			List<String> columns = existing.get(index.getName().toUpperCase());
+			if (columns == null) {
+				if (createTable) {
+					LOGGER.info("Creating index " + index.getName() + " on table " + dbTable.name());
+					execute(index.createSQL(dbTable.name()));
+				} else {
+					LOGGER.warning("Index " + index.getName() + " is missing on table " + dbTable.name());
+					result = false;
+				}
+				continue;
+			}
+			List<String> expected = new ArrayList<>();
+			index.getColumns().forEach(column -> expected.add(column.toUpperCase()));
+			if (!columns.equals(expected)) {
+				LOGGER.warning("Index " + index.getName() + " on table " + dbTable.name() + " is on " + columns + " instead of " + expected);
+				result = false;
+			}
+		}
+		return result;
+	}
+
+	private Map<String, List<String>> readIndexes(String table) throws SQLException {
+		Map<String, List<String>> indexes = readIndexInfo(table);
+		// Derby range les noms sans guillemets en majuscules
+		if (indexes.isEmpty() && !table.equals(table.toUpperCase())) {
+			indexes = readIndexInfo(table.toUpperCase());
+		}
+		return indexes;
+	}
+
+	private Map<String, List<String>> readIndexInfo(String table) throws SQLException {
+		Map<String, TreeMap<Integer, String>> indexes = new HashMap<>();
+		try (ResultSet rs = db.getMetaData().getIndexInfo(null, null, table, false, true)) {
+			while (rs.next()) {
+				String name = rs.getString("INDEX_NAME");
+				String column = rs.getString("COLUMN_NAME");
+				if (name == null || column == null) {
+					continue;
+				}
+				indexes.computeIfAbsent(name.toUpperCase(), key -> new TreeMap<>()).put((int) rs.getShort("ORDINAL_POSITION"), column.toUpperCase());
+			}
+		}
+		Map<String, List<String>> result = new HashMap<>();
+		indexes.forEach((name, columns) -> result.put(name, new ArrayList<>(columns.values())));
+		return result;
+	}
+
+	private Map<String, Set<String>> readSchema() throws SQLException {
+		Map<String, Set<String>> schema = new HashMap<>();
+		DatabaseMetaData metaData = db.getMetaData();
+		try (ResultSet rs = metaData.getColumns(null, null, "%", "%")) {
+			while (rs.next()) {
+				String table = rs.getString("TABLE_NAME").toUpperCase();
+				String column = rs.getString("COLUMN_NAME").toUpperCase();
+				schema.computeIfAbsent(table, key -> new HashSet<>()).add(column);
+			}
+		}
+		return schema;
+	}
+
+	private String createTableSQL(DbTable dbTable, Dialect dialect) {
+		StringBuilder sql = new StringBuilder();
+		sql.append("Create Table ");
+		sql.append(dbTable.name());
+		sql.append(" (");
+		boolean first = true;
+		for (Field field : dbTable.entity().getFields()) {
+			String dbField = DatabaseUtils.getDbField(field);
+			if (dbField == null) {
+				continue;
+			}
+			if (!first) {
+				sql.append(", ");
+			}
+			if (DatabaseUtils.isDbId(field)) {
+				sql.append(dialect.identityColumn(dbField));
+			} else {
+				sql.append(dbField);
+				sql.append(" ");
+				sql.append(dialect.columnType(field.getType()));
+			}
+			first = false;
+		}
+		sql.append(")");
+		return sql.toString();
+	}
+
+	private void execute(String sql) throws SQLException {
+		try (Statement st = db.createStatement()) {
+			st.executeUpdate(sql);
+		}
+	}
+
+	private String getUrl() {
+		try {
+			return db.getMetaData().getURL();
+		} catch (SQLException e) {
+			return String.valueOf(System.identityHashCode(db));
+		}
+	}
+
+}
@@ -0,0 +1,40 @@
+package db;
+
+public enum ShardStrategy {
+
+	/**
+	 * La table est dans la base principale
+	 */
+	NONE,
+
+	/**
+	 * Le shard est choisi à partir d'un hash de l'id
+	 */
+	HASH,
+
+	/**
+	 * Chaque shard contient une plage d'ids consécutifs (DbTable.shardRange), les ids au delà vont dans le dernier shard
+	 */
+	RANGE;
+
+	/**
+	 * Index du shard propriétaire d'un id
+	 * @param id
+	 * @param shards Nombre de shards
+	 * @param range Taille d'une plage avec RANGE
+	 * @return
+	 */
+	public int shardOf(long id, int shards, long range) {
+		switch (this) {
+			case HASH:
+				// Mélange des bits pour répartir les ids consécutifs
+				long hash = id * 0x9E3779B97F4A7C15L;
+				return (int) Math.floorMod(hash ^ (hash >>> 32), (long) shards);
+			case RANGE:
+				return (int) Math.min(Math.max(id - 1, 0) / range, shards - 1);
+			default:
+				return 0;
+		}
+	}
+
+}
@@ -0,0 +1,140 @@
+package db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Bases utilisées par les tables réparties (DbTable.sharding)
+ * Les urls sont lues dans la clef shards du fichier de properties, séparées par des virgules
+ * Chaque shard a sa propre connexion, les requêtes d'un thread sont routées vers un shard avec on
+ */
+public class Shards {
+
+	private static final Logger LOGGER = Logger.getLogger(Shards.class.getName());
+
+	private static List<jasipe.db.Database> shards = null;
+	private static ExecutorService pool = null;
+
+	public static synchronized int count() {
+		return connect().size();
+	}
+
+	static jasipe.db.Database get(int shard) {
+		return shards().get(shard);
+	}
+
+	/**
+	 * Crée ou vérifie la table sur chaque shard
+	 * @param table
+	 */
+	public static void register(DatabaseTable<?> table) {
+		List<Class<?>> tables = Collections.singletonList(table.getClass());
+		for (jasipe.db.Database shard : shards()) {
+			if (!new SchemaChecker(shard.getConnection(), true).check(tables)) {
+				throw new IllegalStateException("Unable to create the table " + table.getClass().getName() + " on the shard " + shard.getConfiguration().getJdbcURL());
+			}
+		}
+	}
+
+	/**
+	 * Execute une action avec les requêtes du thread courant routées vers un shard
+	 * @param shard
+	 * @param action
+	 * @return
+	 */
+	public static <R> R on(int shard, Supplier<R> action) {
+		jasipe.db.Database previous = Database.useShard(get(shard));
+		try {
+			return action.get();
+		} finally {
+			Database.useShard(previous);
+		}
+	}
+
+	/**
+	 * Execute une action sur tous les shards en parallèle
+	 * @param action
+	 * @return Le résultat de chaque shard, dans l'ordre des shards
+	 */
+	public static <R> List<R> scatter(Supplier<R> action) {
+		List<jasipe.db.Database> list = shards();
+		List<Future<R>> futures = new ArrayList<>();
+		for (int i = 0; i < list.size(); i++) {
+			int shard = i;
+			futures.add(executor().submit(() -> on(shard, action)));
+		}
+		List<R> results = new ArrayList<>();
+		try {
+			for (Future<R> future : futures) {
+				results.add(future.get());
+			}
+			return results;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Unable to query the shards", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while querying the shards", e);
+		}
+	}
+
+	public static synchronized void close() {
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+		if (shards != null) {
+			for (jasipe.db.Database shard : shards) {
+				if (!shard.close()) {
+					LOGGER.warning("Unable to close the shard " + shard.getConfiguration().getJdbcURL());
+				}
+			}
+			shards = null;
+		}
+	}
+
+	private static synchronized List<jasipe.db.Database> shards() {
+		return connect();
+	}
+
+	private static List<jasipe.db.Database> connect() {
+		if (shards != null) {
+			return shards;
+		}
+		String urls = DatabaseProperties.get("shards");
+		if (urls == null || urls.trim().isEmpty()) {
+			throw new IllegalStateException("No shard found, add the shards key in the properties file");
+		}
+		List<jasipe.db.Database> list = new ArrayList<>();
+		for (String url : urls.split(",")) {
+			if (!url.trim().isEmpty()) {
+				list.add(jasipe.factory.DatabaseManager.otherConnection(Database.config(url.trim())));
+			}
+		}
+		LOGGER.info(list.size() + " shards connected");
+		shards = list;
+		return shards;
+	}
+
+	private static synchronized ExecutorService executor() {
+		if (pool == null) {
+			// Pool sans limite : une requête sur un shard peut elle même interroger tous les shards
+			pool = Executors.newCachedThreadPool(runnable -> {
+				Thread thread = new Thread(runnable, "jasipe-shard");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return pool;
+	}
+
+}
@@ -0,0 +1,228 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Journal des requêtes plus longues que le seuil
+ * Le plan d'exécution peut être capturé pour retrouver les index manquants
+ */
+public class SlowQueryLog {
+
+	private static final Logger LOGGER = Logger.getLogger(SlowQueryLog.class.getName());
+	private static final int MAX_ENTRIES = 100;
+
+	private final long threshold;
+	private final boolean explain;
+	private final Deque<SlowQuery> entries = new ArrayDeque<>();
+
+	/**
+	 * @param threshold Durée en ms à partir de laquelle une requête est lente (0 = désactivé)
+	 * @param explain Capture le plan d'exécution des requêtes lentes
+	 */
+	public SlowQueryLog(long threshold, boolean explain) {
+		this.threshold = threshold;
+		this.explain = explain;
+	}
+
+	public boolean isEnabled() {
+		return threshold > 0;
+	}
+
+	/**
+	 * Enregistre la requête si elle dépasse le seuil
+	 * @param db La connexion qui a exécuté la requête
+	 * @param sql
+	 * @param params
+	 * @param rows Nombre de lignes lues ou modifiées
+	 * @param start Début de l'exécution (System.nanoTime)
+	 */
+	public void record(Connection db, String sql, List<Object> params, int rows, long start) {
+		record(db, sql, params, rows, start, System.nanoTime());
+	}
+
+	/**
+	 * Enregistre la requête si elle dépasse le seuil, la lecture du résultat n'est pas comptée
+	 * @param db La connexion qui a exécuté la requête
+	 * @param sql
+	 * @param params
+	 * @param rows Nombre de lignes lues
+	 * @param start Début de l'exécution (System.nanoTime)
+	 * @param end Fin de l'exécution, avant la lecture du résultat (System.nanoTime)
+	 */
+	public void record(Connection db, String sql, List<Object> params, int rows, long start, long end) {
+		log(db, sql, params, 1, rows, start, end);
+	}
+
+	/**
+	 * Enregistre un batch s'il dépasse le seuil, le plan est capturé avec les paramètres de la première ligne
+	 * @param db La connexion qui a exécuté le batch
+	 * @param sql
+	 * @param batch Les paramètres de chaque ligne du batch
+	 * @param rows Nombre de lignes modifiées
+	 * @param start Début de l'exécution (System.nanoTime)
+	 */
+	public void recordBatch(Connection db, String sql, List<List<Object>> batch, int rows, long start) {
+		List<Object> params = batch.isEmpty() ? Collections.emptyList() : batch.get(0);
+		log(db, sql, params, batch.size(), rows, start, System.nanoTime());
+	}
+
+	private void log(Connection db, String sql, List<Object> params, int batchSize, int rows, long start, long end) {
+		if (threshold <= 0) {
+			return;
+		}
+		long duration = (end - start) / 1_000_000;
+		if (duration < threshold) {
+			return;
+		}
+		String plan = explain ? explain(db, sql, params) : null;
+		SlowQuery query = new SlowQuery(sql, params.size(), batchSize, rows, duration, plan);
+		LOGGER.warning(query.toString());
+		synchronized (entries) {
+			entries.addLast(query);
+			if (entries.size() > MAX_ENTRIES) {
+				entries.removeFirst();
+			}
+		}
+	}
+
+	public List<SlowQuery> getEntries() {
+		synchronized (entries) {
+			return new ArrayList<>(entries);
+		}
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	private String explain(Connection db, String sql, List<Object> params) {
+		try {
+			switch (Dialect.of(db)) {
+				case SQLITE:
+					return explainSQLite(db, sql, params);
+				case DERBY:
+					return explainDerby(db, sql, params);
+				default:
+					return null;
+			}
+		} catch (SQLException e) {
+			LOGGER.warning("Unable to explain query: " + e.getMessage());
+			return null;
+		}
+	}
+
+	private String explainSQLite(Connection db, String sql, List<Object> params) throws SQLException {
+		StringBuilder plan = new StringBuilder();
+		try (PreparedStatement st = db.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+			bind(st, params);
+			try (ResultSet rs = st.executeQuery()) {
+				while (rs.next()) {
+					plan.append(rs.getString("detail"));
+					plan.append("\n");
+				}
+			}
+		}
+		return plan.toString().trim();
+	}
+
+	private String explainDerby(Connection db, String sql, List<Object> params) throws SQLException {
+		// Derby doit ré-exécuter la requête pour avoir les statistiques, uniquement pour les select
+		if (!sql.trim().toLowerCase().startsWith("select")) {
+			return null;
+		}
+		try (Statement st = db.createStatement()) {
+			st.execute("CALL SYSCS_UTIL.SYSCS_SET_RUNTIMESTATISTICS(1)");
+			try (PreparedStatement query = db.prepareStatement(sql)) {
+				bind(query, params);
+				try (ResultSet rs = query.executeQuery()) {
+					while (rs.next()) {
+						// Lecture de toutes les lignes pour avoir les statistiques complètes
+					}
+				}
+			}
+			try (ResultSet rs = st.executeQuery("VALUES SYSCS_UTIL.SYSCS_GET_RUNTIMESTATISTICS()")) {
+				return rs.next() ? rs.getString(1) : null;
+			} finally {
+				st.execute("CALL SYSCS_UTIL.SYSCS_SET_RUNTIMESTATISTICS(0)");
+			}
+		}
+	}
+
+	private void bind(PreparedStatement st, List<Object> params) throws SQLException {
+		int i = 1;
+		for (Object param : params) {
+			st.setObject(i++, param);
+		}
+	}
+
+	public static class SlowQuery {
+
+		private final String sql;
+		private final int paramCount;
+		private final int batchSize;
+		private final int rowCount;
+		private final long duration;
+		private final String plan;
+
+		private SlowQuery(String sql, int paramCount, int batchSize, int rowCount, long duration, String plan) {
+			this.sql = sql;
+			this.paramCount = paramCount;
+			this.batchSize = batchSize;
+			this.rowCount = rowCount;
+			this.duration = duration;
+			this.plan = plan;
+		}
+
+		public String getSql() {
+			return sql;
+		}
+
+		public int getParamCount() {
+			return paramCount;
+		}
+
+		/**
+		 * Nombre d'exécutions du batch, 1 pour une requête seule
+		 * @return
+		 */
+		public int getBatchSize() {
+			return batchSize;
+		}
+
+		public int getRowCount() {
+			return rowCount;
+		}
+
+		public long getDuration() {
+			return duration;
+		}
+
+		public String getPlan() {
+			return plan;
+		}
+
+		@Override
+		public String toString() {
+			String batch = (batchSize > 1) ? ", batch of " + batchSize : "";
+			String str = "Slow query (" + duration + " ms, " + paramCount + " params" + batch + ", " + rowCount + " rows): " + sql;
+			if (plan != null) {
+				str += "\n" + plan;
+			}
+			return str;
+		}
+
+	}
+
+}
@@ -0,0 +1,77 @@
+package db;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import db.annotation.DbIndex;
+import db.annotation.DbTable;
+
+/**
+ * Index déclaré avec DbIndex sur les champs d'une entité
+ */
+class TableIndex {
+
+	private final String name;
+	private final boolean unique;
+	private final List<String> columns;
+
+	private TableIndex(String name, boolean unique, List<String> columns) {
+		this.name = name;
+		this.unique = unique;
+		this.columns = columns;
+	}
+
+	/**
+	 * Les index déclarés sur l'entité de la table
+	 * @param dbTable
+	 * @return
+	 */
+	public static List<TableIndex> of(DbTable dbTable) {
+		// Colonnes de chaque index par position, dans l'ordre des champs pour la position par défaut
+		Map<String, TreeMap<Integer, List<String>>> columns = new LinkedHashMap<>();
+		Map<String, Boolean> unique = new LinkedHashMap<>();
+		for (Field field : dbTable.entity().getFields()) {
+			String dbField = DatabaseUtils.getDbField(field);
+			if (dbField == null) {
+				continue;
+			}
+			for (DbIndex index : field.getAnnotationsByType(DbIndex.class)) {
+				String name = index.value().isEmpty() ? dbTable.name() + "_" + dbField + "_idx" : index.value();
+				List<String> atOrder = columns.computeIfAbsent(name, key -> new TreeMap<>()).computeIfAbsent(index.order(), key -> new ArrayList<>());
+				if (index.order() != 0 && !atOrder.isEmpty()) {
+					throw new IllegalStateException("Two columns have the order " + index.order() + " in the index " + name);
+				}
+				atOrder.add(dbField);
+				unique.merge(name, index.unique(), Boolean::logicalOr);
+			}
+		}
+		List<TableIndex> result = new ArrayList<>();
+		columns.forEach((name, indexColumns) -> {
+			List<String> list = new ArrayList<>();
+			indexColumns.values().forEach(list::addAll);
+			result.add(new TableIndex(name, unique.get(name), list));
+		});
+		return result;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public boolean isUnique() {
+		return unique;
+	}
+
+	public List<String> getColumns() {
+		return columns;
+	}
+
+	public String createSQL(String table) {
+		return "Create " + (unique ? "Unique " : "") + "Index " + name + " On " + table + " (" + String.join(", ", columns) + ")";
+	}
+
+}
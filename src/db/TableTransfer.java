@@ -0,0 +1,556 @@
+package db;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import db.annotation.DbTable;
+import db.mapper.ResultSetMapper;
+import db.mapper.RowCodec;
+
+/**
+ * Export et import d'une table en flux, sans charger toute la table en mémoire
+ * Deux formats : CSV avec une ligne d'entête, ou binaire compact ([int len][ligne RowCodec] par ligne)
+ * Les liens vers d'autres entités sont exportés par leur id et ne sont pas chargés
+ */
+public class TableTransfer {
+
+	private static final Logger LOGGER = Logger.getLogger(TableTransfer.class.getName());
+	private static final int MAGIC = 0x4A535052;
+	private static final int VERSION = 1;
+	private static final int BUFFER_SIZE = 1024 * 1024;
+	private static final int BATCH_SIZE = DatabaseProperties.getInt("import.batch", 500);
+	private static final int COMMIT_INTERVAL = DatabaseProperties.getInt("import.commit", 10000);
+
+	/**
+	 * Exporte la table en CSV
+	 * @param table
+	 * @param out
+	 * @return Le nombre de lignes exportées
+	 * @throws IOException
+	 * @throws DatabaseException
+	 */
+	public static long exportCsv(DatabaseTable<?> table, WritableByteChannel out) throws IOException, DatabaseException {
+		RowCodec<?> codec = codec(table);
+		Writer writer = new BufferedWriter(Channels.newWriter(out, StandardCharsets.UTF_8.newEncoder(), -1), BUFFER_SIZE);
+		List<String> columns = columns(codec);
+		writeCsvRecord(writer, columns.toArray());
+		long rows = export(table, codec, row -> {
+			try {
+				writeCsvRecord(writer, row);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		writer.flush();
+		return rows;
+	}
+
+	/**
+	 * Exporte la table au format binaire
+	 * @param table
+	 * @param out
+	 * @return Le nombre de lignes exportées
+	 * @throws IOException
+	 * @throws DatabaseException
+	 */
+	public static long exportBinary(DatabaseTable<?> table, WritableByteChannel out) throws IOException, DatabaseException {
+		RowCodec<?> codec = codec(table);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		ByteBuffer[] rowBuffer = {ByteBuffer.allocate(64 * 1024)};
+		// Entête : format, version et colonnes
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(codec.getFields().size());
+		for (String column : columns(codec)) {
+			byte[] bytes = column.getBytes(StandardCharsets.UTF_8);
+			buffer.putInt(bytes.length).put(bytes);
+		}
+		long rows = export(table, codec, row -> {
+			try {
+				ByteBuffer encoded = encode(codec, row, rowBuffer);
+				if (buffer.remaining() < Integer.BYTES + encoded.remaining()) {
+					flush(buffer, out);
+				}
+				if (buffer.remaining() < Integer.BYTES + encoded.remaining()) {
+					// Ligne plus grande que le buffer, écrite directement
+					ByteBuffer length = ByteBuffer.allocate(Integer.BYTES).putInt(encoded.remaining());
+					length.flip();
+					writeFully(length, out);
+					writeFully(encoded, out);
+				} else {
+					buffer.putInt(encoded.remaining()).put(encoded);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		flush(buffer, out);
+		return rows;
+	}
+
+	public static long importCsv(DatabaseTable<?> table, ReadableByteChannel in) throws IOException, DatabaseException {
+		return importCsv(table, in, COMMIT_INTERVAL);
+	}
+
+	/**
+	 * Importe un CSV produit par exportCsv, les colonnes peuvent être dans un autre ordre
+	 * @param table
+	 * @param in
+	 * @param commitInterval Nombre de lignes par transaction
+	 * @return Le nombre de lignes importées
+	 * @throws IOException
+	 * @throws DatabaseException
+	 */
+	public static long importCsv(DatabaseTable<?> table, ReadableByteChannel in, int commitInterval) throws IOException, DatabaseException {
+		RowCodec<?> codec = codec(table);
+		List<Field> fields = codec.getFields();
+		Reader reader = new BufferedReader(Channels.newReader(in, StandardCharsets.UTF_8.newDecoder(), -1), BUFFER_SIZE);
+		List<String> header = readCsvRecord(reader);
+		if (header == null) {
+			return 0;
+		}
+		// Index du champ de chaque colonne du fichier
+		List<String> columns = columns(codec);
+		int[] positions = new int[header.size()];
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = columns.indexOf(header.get(i));
+			if (positions[i] < 0) {
+				throw new IllegalStateException("Unknown column " + header.get(i) + " in the table " + name(table));
+			}
+		}
+		Importer importer = new Importer(table, columns, commitInterval);
+		try {
+			List<String> record;
+			while ((record = readCsvRecord(reader)) != null) {
+				Object[] row = new Object[fields.size()];
+				for (int i = 0; i < positions.length && i < record.size(); i++) {
+					row[positions[i]] = parse(fields.get(positions[i]), record.get(i));
+				}
+				importer.add(row);
+			}
+			return importer.finish();
+		} catch (IOException | DatabaseException | RuntimeException e) {
+			importer.abort();
+			throw e;
+		}
+	}
+
+	public static long importBinary(DatabaseTable<?> table, ReadableByteChannel in) throws IOException, DatabaseException {
+		return importBinary(table, in, COMMIT_INTERVAL);
+	}
+
+	/**
+	 * Importe un fichier produit par exportBinary
+	 * @param table
+	 * @param in
+	 * @param commitInterval Nombre de lignes par transaction
+	 * @return Le nombre de lignes importées
+	 * @throws IOException
+	 * @throws DatabaseException
+	 */
+	public static long importBinary(DatabaseTable<?> table, ReadableByteChannel in, int commitInterval) throws IOException, DatabaseException {
+		RowCodec<?> codec = codec(table);
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		buffer.flip();
+		if (!fill(buffer, in, 3 * Integer.BYTES) || buffer.getInt() != MAGIC) {
+			throw new IllegalStateException("The file is not a table export");
+		}
+		if (buffer.getInt() != VERSION) {
+			throw new IllegalStateException("Unsupported export version");
+		}
+		List<String> columns = columns(codec);
+		int count = buffer.getInt();
+		List<String> header = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			fill(buffer, in, Integer.BYTES);
+			int length = buffer.getInt();
+			fill(buffer, in, length);
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			header.add(new String(bytes, StandardCharsets.UTF_8));
+		}
+		if (!header.equals(columns)) {
+			throw new IllegalStateException("The columns of the file do not match the table " + name(table) + ": " + header);
+		}
+		Importer importer = new Importer(table, columns, commitInterval);
+		try {
+			while (fill(buffer, in, Integer.BYTES)) {
+				int length = buffer.getInt();
+				if (length > buffer.capacity()) {
+					// Ligne plus grande que le buffer
+					ByteBuffer bigger = ByteBuffer.allocate(length);
+					bigger.put(buffer);
+					bigger.flip();
+					buffer = bigger;
+				}
+				if (!fill(buffer, in, length)) {
+					throw new IllegalStateException("Truncated export file");
+				}
+				int end = buffer.position() + length;
+				importer.add(codec.decodeRow(buffer));
+				buffer.position(end);
+			}
+			return importer.finish();
+		} catch (IOException | DatabaseException | RuntimeException e) {
+			importer.abort();
+			throw e;
+		}
+	}
+
+	private static long export(DatabaseTable<?> table, RowCodec<?> codec, Consumer<Object[]> consumer) throws IOException, DatabaseException {
+		DbTable dbTable = dbTable(table);
+		List<Field> fields = codec.getFields();
+		SQLQueryBuilder sql = SQLQueryBuilder.selectQuery(dbTable.name());
+		sql.columns(columns(codec));
+		// Les lignes sont écrites au fil de la lecture du résultat
+		ResultSetMapper<Long> mapper = rs -> {
+			try {
+				rs.setFetchSize(BATCH_SIZE);
+				long rows = 0;
+				Object[] row = new Object[fields.size()];
+				while (rs.next()) {
+					for (int i = 0; i < row.length; i++) {
+						row[i] = read(rs, i + 1, fields.get(i));
+					}
+					consumer.accept(row);
+					rows++;
+				}
+				return rows;
+			} catch (SQLException e) {
+				throw new IllegalStateException("Unable to read the table " + dbTable.name(), e);
+			}
+		};
+		try {
+			Optional<Long> rows = Database.query(sql.toString(), sql.getParams(), mapper, dbTable.timeout());
+			if (rows.isEmpty()) {
+				throw new DatabaseException("Unable to export the table " + dbTable.name());
+			}
+			return rows.get();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static Object read(ResultSet rs, int index, Field field) throws SQLException {
+		Class<?> type = field.getType();
+		Object value;
+		if (DatabaseUtils.isDbLink(field)) {
+			long id = rs.getLong(index);
+			return (id == 0) ? null : id;
+		} else if (type == long.class || type == Long.class) {
+			value = rs.getLong(index);
+		} else if (type == int.class || type == Integer.class) {
+			value = rs.getInt(index);
+		} else if (type == short.class || type == Short.class) {
+			value = rs.getShort(index);
+		} else if (type == byte.class || type == Byte.class) {
+			value = rs.getByte(index);
+		} else if (type == double.class || type == Double.class) {
+			value = rs.getDouble(index);
+		} else if (type == float.class || type == Float.class) {
+			value = rs.getFloat(index);
+		} else if (type == boolean.class || type == Boolean.class) {
+			value = rs.getBoolean(index);
+		} else if (type == BigDecimal.class) {
+			value = rs.getBigDecimal(index);
+		} else if (type == byte[].class) {
+			value = rs.getBytes(index);
+		} else if (type == java.sql.Date.class) {
+			value = rs.getDate(index);
+		} else if (java.util.Date.class.isAssignableFrom(type)) {
+			value = rs.getTimestamp(index);
+		} else {
+			value = rs.getString(index);
+		}
+		return rs.wasNull() ? null : value;
+	}
+
+	private static Object parse(Field field, String value) {
+		if (value == null) {
+			return null;
+		}
+		Class<?> type = field.getType();
+		if (DatabaseUtils.isDbLink(field) || type == long.class || type == Long.class) {
+			return Long.valueOf(value);
+		} else if (type == int.class || type == Integer.class) {
+			return Integer.valueOf(value);
+		} else if (type == short.class || type == Short.class) {
+			return Short.valueOf(value);
+		} else if (type == byte.class || type == Byte.class) {
+			return Byte.valueOf(value);
+		} else if (type == double.class || type == Double.class) {
+			return Double.valueOf(value);
+		} else if (type == float.class || type == Float.class) {
+			return Float.valueOf(value);
+		} else if (type == boolean.class || type == Boolean.class) {
+			return Boolean.valueOf(value);
+		} else if (type == BigDecimal.class) {
+			return new BigDecimal(value);
+		} else if (type == byte[].class) {
+			return Base64.getDecoder().decode(value);
+		} else if (type == java.sql.Date.class) {
+			return java.sql.Date.valueOf(value);
+		} else if (java.util.Date.class.isAssignableFrom(type)) {
+			return Timestamp.valueOf(value);
+		}
+		return value;
+	}
+
+	private static void writeCsvRecord(Writer writer, Object[] values) throws IOException {
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				writer.write(',');
+			}
+			Object value = values[i];
+			if (value == null) {
+				// Champ vide = null, une chaine vide est écrite ""
+				continue;
+			}
+			String text = (value instanceof byte[]) ? Base64.getEncoder().encodeToString((byte[]) value) : value.toString();
+			if (text.isEmpty() || text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+				writer.write('"');
+				writer.write(text.replace("\"", "\"\""));
+				writer.write('"');
+			} else {
+				writer.write(text);
+			}
+		}
+		writer.write('\n');
+	}
+
+	/**
+	 * Lit un enregistrement CSV, les champs entre guillemets peuvent contenir des retours à la ligne
+	 * @param reader
+	 * @return Les champs, null pour un champ vide sans guillemets, ou null à la fin du fichier
+	 * @throws IOException
+	 */
+	private static List<String> readCsvRecord(Reader reader) throws IOException {
+		int c = reader.read();
+		if (c == -1) {
+			return null;
+		}
+		List<String> record = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		boolean inQuotes = false;
+		while (true) {
+			if (inQuotes) {
+				if (c == -1) {
+					throw new IllegalStateException("Unterminated quoted field in the CSV file");
+				}
+				if (c == '"') {
+					reader.mark(1);
+					int next = reader.read();
+					if (next == '"') {
+						field.append('"');
+					} else {
+						inQuotes = false;
+						reader.reset();
+					}
+				} else {
+					field.append((char) c);
+				}
+			} else if (c == '"') {
+				inQuotes = true;
+				quoted = true;
+			} else if (c == ',' || c == '\n' || c == -1) {
+				record.add((quoted || field.length() > 0) ? field.toString() : null);
+				field.setLength(0);
+				quoted = false;
+				if (c != ',') {
+					return record;
+				}
+			} else if (c != '\r') {
+				field.append((char) c);
+			}
+			c = reader.read();
+		}
+	}
+
+	private static ByteBuffer encode(RowCodec<?> codec, Object[] row, ByteBuffer[] rowBuffer) {
+		while (true) {
+			ByteBuffer buffer = rowBuffer[0];
+			buffer.clear();
+			try {
+				codec.encodeRow(row, buffer);
+				buffer.flip();
+				return buffer;
+			} catch (BufferOverflowException e) {
+				rowBuffer[0] = ByteBuffer.allocate(buffer.capacity() * 2);
+			}
+		}
+	}
+
+	/**
+	 * S'assure que le buffer (en lecture) contient au moins needed octets
+	 * @return false si la fin du flux est atteinte avant
+	 */
+	private static boolean fill(ByteBuffer buffer, ReadableByteChannel in, int needed) throws IOException {
+		if (buffer.remaining() >= needed) {
+			return true;
+		}
+		buffer.compact();
+		while (buffer.position() < needed) {
+			if (in.read(buffer) < 0) {
+				buffer.flip();
+				if (buffer.hasRemaining() && buffer.remaining() < needed) {
+					throw new IllegalStateException("Truncated export file");
+				}
+				return false;
+			}
+		}
+		buffer.flip();
+		return true;
+	}
+
+	private static void flush(ByteBuffer buffer, WritableByteChannel out) throws IOException {
+		buffer.flip();
+		writeFully(buffer, out);
+		buffer.clear();
+	}
+
+	private static void writeFully(ByteBuffer buffer, WritableByteChannel out) throws IOException {
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+
+	private static RowCodec<?> codec(DatabaseTable<?> table) {
+		DbTable dbTable = dbTable(table);
+		if (dbTable.sharding() != ShardStrategy.NONE) {
+			throw new IllegalStateException("Export and import are not supported on the sharded table " + dbTable.name());
+		}
+		return new RowCodec<>(dbTable.entity());
+	}
+
+	private static List<String> columns(RowCodec<?> codec) {
+		List<String> columns = new ArrayList<>();
+		codec.getFields().forEach(field -> columns.add(DatabaseUtils.getDbField(field)));
+		return columns;
+	}
+
+	private static DbTable dbTable(DatabaseTable<?> table) {
+		DbTable dbTable = table.getClass().getAnnotation(DbTable.class);
+		if (dbTable == null) {
+			throw new IllegalStateException("Unable to find DbTable annotation");
+		}
+		return dbTable;
+	}
+
+	private static String name(DatabaseTable<?> table) {
+		return dbTable(table).name();
+	}
+
+	/**
+	 * Insertions en batch, validées toutes les commitInterval lignes
+	 */
+	private static class Importer {
+
+		private final DatabaseTable<?> table;
+		private final DbTable dbTable;
+		private final List<String> columns;
+		private final int commitInterval;
+		private final boolean transaction;
+		private final List<List<Object>> batch = new ArrayList<>();
+		private String sql = null;
+		private long rows = 0;
+		private long uncommitted = 0;
+
+		private Importer(DatabaseTable<?> table, List<String> columns, int commitInterval) throws DatabaseException {
+			this.table = table;
+			this.dbTable = dbTable(table);
+			this.columns = columns;
+			this.commitInterval = Math.max(commitInterval, 1);
+			// Dans une transaction déjà ouverte, c'est l'appelant qui valide
+			this.transaction = !Database.isInTransaction();
+			if (transaction) {
+				Database.begin();
+			}
+		}
+
+		private void add(Object[] row) throws DatabaseException {
+			SQLQueryBuilder query = SQLQueryBuilder.insertQuery(dbTable.name());
+			for (int i = 0; i < row.length; i++) {
+				query.add(columns.get(i), row[i]);
+			}
+			if (sql == null) {
+				sql = query.toString();
+			}
+			batch.add(query.getParams());
+			rows++;
+			uncommitted++;
+			if (batch.size() >= BATCH_SIZE) {
+				flush();
+			}
+			if (transaction && uncommitted >= commitInterval) {
+				flush();
+				ChangeLog.recordTable(dbTable.name());
+				Database.commit();
+				Database.begin();
+				uncommitted = 0;
+			}
+		}
+
+		private long finish() throws DatabaseException {
+			flush();
+			// Les autres processus peuvent avoir mis en cache l'absence des ids importés
+			ChangeLog.recordTable(dbTable.name());
+			if (transaction) {
+				Database.commit();
+			}
+			// Le cache ne connait pas les lignes importées
+			table.clearCache();
+			// Les ids importés ne doivent pas être redonnés par le générateur (HILO, SEQUENCE)
+			table.skipInsertedIds();
+			return rows;
+		}
+
+		private void abort() {
+			if (transaction) {
+				try {
+					Database.rollback();
+				} catch (DatabaseException e) {
+					LOGGER.severe("Unable to rollback the import: " + e.getMessage());
+				}
+			}
+			table.clearCache();
+			// Les lots déjà validés sont restés dans la table
+			try {
+				table.skipInsertedIds();
+			} catch (RuntimeException e) {
+				LOGGER.severe("Unable to move the id generator after the import: " + e.getMessage());
+			}
+		}
+
+		private void flush() throws DatabaseException {
+			if (batch.isEmpty()) {
+				return;
+			}
+			if (!Database.executeBatch(sql, batch, dbTable.timeout())) {
+				throw new DatabaseException("Unable to import data in the table " + dbTable.name());
+			}
+			batch.clear();
+		}
+
+	}
+
+}
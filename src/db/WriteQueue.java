@@ -0,0 +1,212 @@
+package db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * File d'écriture consommée par un seul thread, pour SQLite qui n'accepte qu'un écrivain à la fois
+ * Les écritures en attente sont regroupées dans une seule transaction (group commit) :
+ * le thread attend au plus write.queue.tick ms d'autres écritures, dans la limite de write.queue.max
+ * Si la transaction du groupe échoue, chaque écriture est rejouée seule pour ne faire échouer que la fautive
+ */
+public class WriteQueue {
+
+	private static final Logger LOGGER = Logger.getLogger(WriteQueue.class.getName());
+	private static final boolean ENABLED = DatabaseProperties.getBool("write.queue", false);
+	private static final long TICK = DatabaseProperties.getLong("write.queue.tick", 5);
+	private static final int MAX = DatabaseProperties.getInt("write.queue.max", 1000);
+	private static final Task STOP = new Task(null);
+
+	private static final BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+	private static volatile Thread writer = null;
+
+	/**
+	 * Ecriture en deux temps, le cache n'est mis à jour qu'après la validation de la transaction
+	 */
+	interface Write {
+
+		void write() throws DatabaseException;
+
+		void written();
+
+		/**
+		 * La transaction de l'écriture a été annulée
+		 */
+		default void discarded() {
+		}
+
+	}
+
+	/**
+	 * Vrai si save, saveAll et del passent par la file (clef write.queue du fichier de properties)
+	 * @return
+	 */
+	public static boolean isEnabled() {
+		return ENABLED;
+	}
+
+	/**
+	 * Nombre d'écritures en attente
+	 * @return
+	 */
+	public static int size() {
+		return queue.size();
+	}
+
+	/**
+	 * Ajoute une écriture à la file
+	 * @param write
+	 * @return Terminé une fois la transaction validée, en erreur si l'écriture a échoué
+	 */
+	static CompletableFuture<Void> submit(Write write) {
+		Task task = new Task(write);
+		// Une écriture lancée depuis le thread d'écriture attendrait son propre groupe
+		if (Thread.currentThread() == writer) {
+			commit(Collections.singletonList(task));
+			return task.future;
+		}
+		start();
+		queue.add(task);
+		return task.future;
+	}
+
+	/**
+	 * Attend la fin d'une écriture de la file
+	 * @param future
+	 * @return
+	 * @throws DatabaseException L'erreur de l'écriture
+	 */
+	static <R> R await(CompletableFuture<R> future) throws DatabaseException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof DatabaseException) {
+				throw (DatabaseException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new DatabaseException(cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DatabaseException("Interrupted while waiting for the write queue", e);
+		}
+	}
+
+	/**
+	 * Ecrit les écritures en attente puis arrête le thread d'écriture
+	 */
+	public static void close() {
+		Thread thread;
+		synchronized (WriteQueue.class) {
+			thread = writer;
+			writer = null;
+		}
+		if (thread == null) {
+			return;
+		}
+		queue.add(STOP);
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOGGER.warning("Interrupted while closing the write queue");
+		}
+	}
+
+	private static synchronized void start() {
+		if (writer != null) {
+			return;
+		}
+		writer = new Thread(WriteQueue::run, "jasipe-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	private static void run() {
+		List<Task> group = new ArrayList<>();
+		while (true) {
+			try {
+				Task task = queue.take();
+				if (task == STOP) {
+					return;
+				}
+				group.add(task);
+				// Attente des autres écritures du même tick
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TICK);
+				while (group.size() < MAX) {
+					task = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+					if (task == null) {
+						break;
+					}
+					if (task == STOP) {
+						// Le groupe en cours est écrit avant l'arrêt
+						queue.add(STOP);
+						break;
+					}
+					group.add(task);
+				}
+			} catch (InterruptedException e) {
+				LOGGER.warning("The write queue was interrupted");
+				Thread.currentThread().interrupt();
+				group.forEach(task -> task.future.completeExceptionally(e));
+				return;
+			}
+			commit(group);
+			group.clear();
+		}
+	}
+
+	private static void commit(List<Task> group) {
+		try {
+			Database.begin();
+			try {
+				for (Task task : group) {
+					task.write.write();
+				}
+				Database.commit();
+			} catch (DatabaseException | IllegalStateException e) {
+				Database.rollback();
+				throw e;
+			}
+		} catch (DatabaseException | IllegalStateException e) {
+			if (group.size() == 1) {
+				LOGGER.severe(e.getMessage());
+				group.get(0).write.discarded();
+				group.get(0).future.completeExceptionally(e);
+				return;
+			}
+			// Chaque écriture dans sa propre transaction
+			group.forEach(task -> commit(Collections.singletonList(task)));
+			return;
+		}
+		for (Task task : group) {
+			try {
+				task.write.written();
+				task.future.complete(null);
+			} catch (RuntimeException e) {
+				task.future.completeExceptionally(e);
+			}
+		}
+	}
+
+	private static class Task {
+
+		private final Write write;
+		private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+		private Task(Write write) {
+			this.write = write;
+		}
+
+	}
+
+}
@@ -5,8 +5,29 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+import db.id.IdStrategy;
+
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.FIELD)
 public @interface DbId {
+	
+	/**
+	 * La stratégie de génération de l'id
+	 * Avec HILO et SEQUENCE l'id est attribué en mémoire avant l'insertion
+	 * @return
+	 */
+	public IdStrategy strategy() default IdStrategy.IDENTITY;
+	
+	/**
+	 * Nombre d'ids réservés à chaque aller-retour en base (HILO et SEQUENCE)
+	 * @return
+	 */
+	public int blockSize() default 50;
+	
+	/**
+	 * Nom de la séquence Derby, par défaut <table>_seq
+	 * @return
+	 */
+	public String sequence() default "";
 
 }
@@ -0,0 +1,33 @@
+package db.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+@Repeatable(DbIndexes.class)
+public @interface DbIndex {
+	
+	/**
+	 * Le nom de l'index, les champs avec le même nom forment un index composite
+	 * Par défaut <table>_<colonne>_idx
+	 * @return
+	 */
+	public String value() default "";
+	
+	/**
+	 * Index unique, pour un index composite il suffit de l'indiquer sur un de ses champs
+	 * @return
+	 */
+	public boolean unique() default false;
+	
+	/**
+	 * Position de la colonne dans un index composite, par défaut l'ordre de déclaration des champs
+	 * @return
+	 */
+	public int order() default 0;
+	
+}
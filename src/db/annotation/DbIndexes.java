@@ -0,0 +1,17 @@
+package db.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Conteneur des DbIndex d'un champ présent dans plusieurs index
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface DbIndexes {
+	
+	public DbIndex[] value();
+	
+}
@@ -5,6 +5,9 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+import db.Cascade;
+import db.Fetch;
+
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.FIELD)
 public @interface DbLink {
@@ -16,4 +19,17 @@ public @interface DbLink {
 	 */
 	public String value() default "#PROPERTIES#";
 	
+	/**
+	 * Sauvegarde de l'entité liée lors de la sauvegarde de l'entité qui la référence
+	 * Par défaut seule une entité liée sans id est insérée, les entités existantes ne sont pas réécrites
+	 * @return
+	 */
+	public Cascade cascade() default Cascade.SAVE_IF_NEW;
+	
+	/**
+	 * Chargement de l'entité liée, JOIN pour la lire dans la même requête que l'entité qui la référence
+	 * @return
+	 */
+	public Fetch fetch() default Fetch.SELECT;
+	
 }
@@ -6,6 +6,11 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 import db.Persistable;
+import db.ShardStrategy;
+import db.cache.CachePolicy;
+import db.cache.CacheReference;
+import db.cache.CacheStorage;
+import db.cache.MissPolicy;
 
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.TYPE)
@@ -14,5 +19,66 @@ public @interface DbTable {
 	public String name();
 	
 	public Class<? extends Persistable> entity();
-
+	
+	/**
+	 * La politique de cache de la table
+	 * Par défaut la clef cache du fichier de properties est utilisée
+	 * @return
+	 */
+	public CachePolicy cache() default CachePolicy.DEFAULT;
+	
+	/**
+	 * Nombre max d'entités en cache (0 = illimité)
+	 * La valeur par défaut -1 doit être remplacer par la clef cache.size du fichier de properties
+	 * @return
+	 */
+	public int cacheSize() default -1;
+	
+	/**
+	 * Durée de vie en ms d'une entité en cache (0 = illimité)
+	 * La valeur par défaut -1 doit être remplacer par la clef cache.ttl du fichier de properties
+	 * @return
+	 */
+	public long cacheTtl() default -1;
+	
+	/**
+	 * Stockage du cache, dans le tas ou hors du tas pour les grosses tables
+	 * @return
+	 */
+	public CacheStorage cacheStorage() default CacheStorage.HEAP;
+	
+	/**
+	 * Référence des entités en cache dans le tas, pour que le cache rétrécisse quand la mémoire manque
+	 * Par défaut la clef cache.reference du fichier de properties est utilisée (strong, soft ou weak)
+	 * @return
+	 */
+	public CacheReference cacheReference() default CacheReference.DEFAULT;
+	
+	/**
+	 * Cache des ids absents, pour ne pas interroger la base à chaque getById d'un id inexistant
+	 * Par défaut la clef cache.negative du fichier de properties est utilisée (none, misses ou bloom)
+	 * @return
+	 */
+	public MissPolicy negativeCache() default MissPolicy.DEFAULT;
+	
+	/**
+	 * Timeout en secondes des requêtes sur la table
+	 * La valeur par défaut -1 doit être remplacer par la clef timeout du fichier de properties
+	 * @return
+	 */
+	public int timeout() default -1;
+	
+	/**
+	 * Répartition des lignes sur les bases de la clef shards du fichier de properties
+	 * Une table répartie doit avoir un id HILO ou SEQUENCE pour connaître le shard avant l'insertion
+	 * @return
+	 */
+	public ShardStrategy sharding() default ShardStrategy.NONE;
+	
+	/**
+	 * Nombre d'ids par shard avec la répartition RANGE
+	 * @return
+	 */
+	public long shardRange() default 1000000;
+	
 }
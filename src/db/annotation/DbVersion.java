@@ -0,0 +1,16 @@
+package db.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Colonne de version pour le verrouillage optimiste, sur un champ DbField de type long ou int
+ * Chaque mise à jour vérifie la version lue et l'incrémente
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface DbVersion {
+
+}
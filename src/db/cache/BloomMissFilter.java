@@ -0,0 +1,114 @@
+package db.cache;
+
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Filtre de Bloom sur les ids de la table, chargés en une requête sur la seule colonne id
+ * Un id absent du filtre est sûrement absent de la table, un id présent peut être un faux positif (1 %)
+ * Le filtre est reconstruit quand les sauvegardes dépassent sa capacité
+ */
+public class BloomMissFilter implements MissFilter {
+
+	private static final Logger LOGGER = Logger.getLogger(BloomMissFilter.class.getName());
+	private static final int HASHES = 7;
+	private static final int BITS_PER_ID = 10;
+	private static final int MIN_CAPACITY = 1024;
+
+	private final Supplier<long[]> ids;
+	private long[] bits = null;
+	private long size;
+	private long capacity;
+	private long added;
+
+	/**
+	 * @param ids Chargement de tous les ids de la table
+	 */
+	public BloomMissFilter(Supplier<long[]> ids) {
+		this.ids = ids;
+	}
+
+	@Override
+	public synchronized boolean isMissing(long id) {
+		if (bits == null && !build()) {
+			return false;
+		}
+		return !mightContain(id);
+	}
+
+	@Override
+	public void missed(long id) {
+		// Un faux positif reste un faux positif, rien à retenir
+	}
+
+	@Override
+	public synchronized void added(long id) {
+		if (bits == null) {
+			return;
+		}
+		put(id);
+		// Trop d'ajouts, le taux de faux positifs augmente
+		if (++added > capacity) {
+			bits = null;
+		}
+	}
+
+	@Override
+	public synchronized void clear() {
+		bits = null;
+	}
+
+	private boolean build() {
+		long[] all;
+		try {
+			all = ids.get();
+		} catch (IllegalStateException e) {
+			LOGGER.warning("Unable to load the ids for the Bloom filter: " + e.getMessage());
+			return false;
+		}
+		// Place pour autant de sauvegardes que d'ids existants
+		capacity = Math.max(all.length, MIN_CAPACITY);
+		size = Math.max(64, (capacity * 2 * BITS_PER_ID + 63) / 64 * 64);
+		bits = new long[(int) (size / 64)];
+		added = 0;
+		for (long id : all) {
+			put(id);
+		}
+		return true;
+	}
+
+	private void put(long id) {
+		long hash = mix(id);
+		long h1 = hash;
+		long h2 = (hash >>> 32) | 1;
+		for (int i = 0; i < HASHES; i++) {
+			long bit = Math.floorMod(h1 + i * h2, size);
+			bits[(int) (bit >>> 6)] |= 1L << bit;
+		}
+	}
+
+	private boolean mightContain(long id) {
+		long hash = mix(id);
+		long h1 = hash;
+		long h2 = (hash >>> 32) | 1;
+		for (int i = 0; i < HASHES; i++) {
+			long bit = Math.floorMod(h1 + i * h2, size);
+			if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long mix(long id) {
+		// Finaliseur de MurmurHash3
+		long hash = id;
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb93fe53a87cdL;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+}
@@ -0,0 +1,30 @@
+package db.cache;
+
+public enum CachePolicy {
+
+	/**
+	 * Utilise la valeur de la clef cache du fichier de properties
+	 */
+	DEFAULT,
+
+	/**
+	 * Aucune mise en cache
+	 */
+	NONE,
+
+	/**
+	 * Les entités lues sont mises en cache, une sauvegarde retire l'entité du cache
+	 */
+	READ_THROUGH,
+
+	/**
+	 * Les entités lues et sauvegardées sont mises en cache
+	 */
+	WRITE_THROUGH,
+
+	/**
+	 * Toute la table est chargée en cache au premier accès
+	 */
+	FULL_TABLE
+
+}
@@ -0,0 +1,25 @@
+package db.cache;
+
+public enum CacheReference {
+
+	/**
+	 * Valeur de la clef cache.reference du fichier de properties, STRONG par défaut
+	 */
+	DEFAULT,
+
+	/**
+	 * Les entités restent en cache jusqu'à leur éviction
+	 */
+	STRONG,
+
+	/**
+	 * Les entités sont libérées par le ramasse-miettes quand le tas manque de place
+	 */
+	SOFT,
+
+	/**
+	 * Les entités sont libérées dès qu'elles ne sont plus utilisées hors du cache
+	 */
+	WEAK
+
+}
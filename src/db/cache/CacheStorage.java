@@ -0,0 +1,15 @@
+package db.cache;
+
+public enum CacheStorage {
+
+	/**
+	 * Les entités sont gardées dans le tas
+	 */
+	HEAP,
+
+	/**
+	 * Les entités sont stockées sous forme binaire hors du tas et recréées à la lecture
+	 */
+	OFF_HEAP
+
+}
@@ -0,0 +1,74 @@
+package db.cache;
+
+import java.util.function.Supplier;
+
+import db.DatabaseProperties;
+import db.Persistable;
+import db.annotation.DbTable;
+
+public class CacheStrategy {
+
+	private static final boolean CACHE_ENABLED = DatabaseProperties.getBool("cache", true);
+	private static final int CACHE_SIZE = DatabaseProperties.getInt("cache.size", 0);
+	private static final long CACHE_TTL = DatabaseProperties.getLong("cache.ttl", 0);
+	private static final int OFF_HEAP_SEGMENT = DatabaseProperties.getInt("cache.offheap.segment", 8 * 1024 * 1024);
+	private static final long OFF_HEAP_SIZE = DatabaseProperties.getLong("cache.offheap.size", 256L * 1024 * 1024);
+	private static final String CACHE_REFERENCE = DatabaseProperties.get("cache.reference");
+	private static final String MISS_POLICY = DatabaseProperties.get("cache.negative");
+	private static final int MISS_SIZE = DatabaseProperties.getInt("cache.negative.size", 10000);
+	private static final long MISS_TTL = DatabaseProperties.getLong("cache.negative.ttl", 60000);
+
+	@SuppressWarnings("unchecked")
+	public static <T extends Persistable> TableCache<T> resolve(DbTable dbTable) {
+		CachePolicy policy = resolvePolicy(dbTable.cache());
+		if (policy == CachePolicy.NONE) {
+			return new NoCache<>();
+		}
+		int maxSize = (dbTable.cacheSize() >= 0) ? dbTable.cacheSize() : CACHE_SIZE;
+		long ttl = (dbTable.cacheTtl() >= 0) ? dbTable.cacheTtl() : CACHE_TTL;
+		if (dbTable.cacheStorage() == CacheStorage.OFF_HEAP) {
+			if (dbTable.cacheReference() == CacheReference.SOFT || dbTable.cacheReference() == CacheReference.WEAK) {
+				throw new IllegalStateException("The off heap cache of " + dbTable.name() + " can't use " + dbTable.cacheReference() + " references");
+			}
+			Class<T> entity = (Class<T>) dbTable.entity();
+			return new OffHeapCache<>(entity, policy, maxSize, ttl, OFF_HEAP_SEGMENT, OFF_HEAP_SIZE);
+		}
+		return new MapCache<>(policy, maxSize, ttl, resolveReference(dbTable.cacheReference()));
+	}
+	
+	public static CacheReference resolveReference(CacheReference reference) {
+		if (reference != CacheReference.DEFAULT) {
+			return reference;
+		}
+		return (CACHE_REFERENCE == null) ? CacheReference.STRONG : CacheReference.valueOf(CACHE_REFERENCE.trim().toUpperCase());
+	}
+
+	/**
+	 * Crée le cache négatif de la table
+	 * @param dbTable
+	 * @param ids Chargement de tous les ids de la table, pour le filtre de Bloom
+	 * @return
+	 */
+	public static MissFilter resolveMisses(DbTable dbTable, Supplier<long[]> ids) {
+		MissPolicy policy = dbTable.negativeCache();
+		if (policy == MissPolicy.DEFAULT) {
+			policy = (MISS_POLICY == null) ? MissPolicy.NONE : MissPolicy.valueOf(MISS_POLICY.trim().toUpperCase());
+		}
+		switch (policy) {
+			case MISSES:
+				return new MissSet(MISS_SIZE, MISS_TTL);
+			case BLOOM:
+				return new BloomMissFilter(ids);
+			default:
+				return new NoMissFilter();
+		}
+	}
+
+	public static CachePolicy resolvePolicy(CachePolicy policy) {
+		if (policy != CachePolicy.DEFAULT) {
+			return policy;
+		}
+		return CACHE_ENABLED ? CachePolicy.WRITE_THROUGH : CachePolicy.NONE;
+	}
+
+}
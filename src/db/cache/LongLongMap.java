@@ -0,0 +1,133 @@
+package db.cache;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Table de hachage long vers long sans objet par entrée (adressage ouvert)
+ * La clef 0 est réservée pour marquer une case vide
+ */
+public class LongLongMap {
+
+	private static final float LOAD_FACTOR = 0.6f;
+
+	private long[] keys;
+	private long[] values;
+	private int size = 0;
+
+	public LongLongMap() {
+		this(64);
+	}
+
+	public LongLongMap(int capacity) {
+		int length = Integer.highestOneBit(Math.max(16, (int) (capacity / LOAD_FACTOR)) - 1) << 1;
+		keys = new long[length];
+		values = new long[length];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean containsKey(long key) {
+		// La clef 0 n'est jamais présente, sa case est une case vide
+		return key != 0 && keys[indexOf(key)] == key;
+	}
+
+	/**
+	 * @param key
+	 * @param defaultValue
+	 * @return La valeur ou defaultValue si la clef est absente
+	 */
+	public long get(long key, long defaultValue) {
+		if (key == 0) {
+			return defaultValue;
+		}
+		int index = indexOf(key);
+		return (keys[index] == key) ? values[index] : defaultValue;
+	}
+
+	public void put(long key, long value) {
+		if (key == 0) {
+			throw new IllegalArgumentException("Key 0 is reserved");
+		}
+		int index = indexOf(key);
+		if (keys[index] != key) {
+			keys[index] = key;
+			size++;
+		}
+		values[index] = value;
+		if (size > keys.length * LOAD_FACTOR) {
+			resize();
+		}
+	}
+
+	public boolean remove(long key) {
+		if (key == 0) {
+			return false;
+		}
+		int index = indexOf(key);
+		if (keys[index] != key) {
+			return false;
+		}
+		// Décalage des entrées suivantes pour ne pas casser les séquences de sondage
+		int mask = keys.length - 1;
+		int hole = index;
+		int next = (hole + 1) & mask;
+		while (keys[next] != 0) {
+			int ideal = hash(keys[next]) & mask;
+			if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+				keys[hole] = keys[next];
+				values[hole] = values[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		keys[hole] = 0;
+		values[hole] = 0;
+		size--;
+		return true;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(values, 0);
+		size = 0;
+	}
+
+	public void forEachKey(LongConsumer consumer) {
+		for (long key : keys) {
+			if (key != 0) {
+				consumer.accept(key);
+			}
+		}
+	}
+
+	private int indexOf(long key) {
+		int mask = keys.length - 1;
+		int index = hash(key) & mask;
+		while (keys[index] != 0 && keys[index] != key) {
+			index = (index + 1) & mask;
+		}
+		return index;
+	}
+
+	private void resize() {
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new long[oldValues.length * 2];
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != 0) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+}
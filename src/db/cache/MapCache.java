@@ -0,0 +1,274 @@
+package db.cache;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import db.Persistable;
+
+public class MapCache<T extends Persistable> implements TableCache<T> {
+
+	private final CachePolicy policy;
+	private final int maxSize;
+	private final long ttl;
+	private final CacheReference reference;
+	private final Map<Long, CacheEntry<T>> cacheMap;
+	private final ReferenceQueue<T> collectedQueue = new ReferenceQueue<>();
+	private boolean complete = false;
+	private long completeAt = 0;
+	private long collected = 0;
+
+	/**
+	 * @param policy La politique de cache (READ_THROUGH, WRITE_THROUGH ou FULL_TABLE)
+	 * @param maxSize Nombre max d'entités en cache (0 = illimité, ignoré pour FULL_TABLE)
+	 * @param ttl Durée de vie d'une entité en cache en ms (0 = illimité)
+	 */
+	public MapCache(CachePolicy policy, int maxSize, long ttl) {
+		this(policy, maxSize, ttl, CacheReference.STRONG);
+	}
+
+	/**
+	 * @param policy La politique de cache (READ_THROUGH, WRITE_THROUGH ou FULL_TABLE)
+	 * @param maxSize Nombre max d'entités en cache (0 = illimité, ignoré pour FULL_TABLE)
+	 * @param ttl Durée de vie d'une entité en cache en ms (0 = illimité)
+	 * @param reference Référence des entités, avec SOFT ou WEAK les entités libérées sont retirées du cache
+	 */
+	public MapCache(CachePolicy policy, int maxSize, long ttl, CacheReference reference) {
+		this.policy = policy;
+		this.maxSize = (policy == CachePolicy.FULL_TABLE) ? 0 : maxSize;
+		this.ttl = ttl;
+		this.reference = reference;
+		// Ordre d'accès pour éviction LRU si la taille est bornée
+		this.cacheMap = new LinkedHashMap<Long, CacheEntry<T>>(16, 0.75f, this.maxSize > 0) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, CacheEntry<T>> eldest) {
+				return MapCache.this.maxSize > 0 && size() > MapCache.this.maxSize;
+			}
+
+		};
+	}
+
+	@Override
+	public CachePolicy getPolicy() {
+		return policy;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+
+	@Override
+	public CacheReference getReference() {
+		return reference;
+	}
+
+	/**
+	 * Nombre d'entités retirées du cache après leur libération par le ramasse-miettes
+	 * @return
+	 */
+	public synchronized long getCollected() {
+		purge();
+		return collected;
+	}
+
+	@Override
+	public synchronized boolean isComplete() {
+		purge();
+		if (complete && ttl > 0 && System.currentTimeMillis() - completeAt > ttl) {
+			cacheMap.clear();
+			complete = false;
+		}
+		return complete;
+	}
+
+	@Override
+	public synchronized boolean contains(long id) {
+		return get(id) != null;
+	}
+
+	@Override
+	public synchronized T get(long id) {
+		purge();
+		CacheEntry<T> entry = cacheMap.get(id);
+		if (entry == null) {
+			return null;
+		}
+		T value = entry.get();
+		// Entité expirée ou libérée
+		if (value == null || entry.isExpired()) {
+			cacheMap.remove(id);
+			complete = false;
+			return null;
+		}
+		return value;
+	}
+
+	@Override
+	public synchronized List<T> getAll() {
+		purge();
+		List<T> list = new ArrayList<>(cacheMap.size());
+		Iterator<CacheEntry<T>> it = cacheMap.values().iterator();
+		while (it.hasNext()) {
+			T value = it.next().get();
+			if (value != null) {
+				list.add(value);
+			} else {
+				// Libérée mais pas encore dans la file : la table en cache n'est plus complète
+				it.remove();
+				complete = false;
+			}
+		}
+		return list;
+	}
+
+	@Override
+	public synchronized void read(T obj) {
+		put(obj);
+	}
+
+	@Override
+	public synchronized void write(T obj) {
+		// En read-through on retire l'entité, elle sera rechargée à la prochaine lecture
+		if (policy == CachePolicy.READ_THROUGH) {
+			cacheMap.remove(obj.getId());
+			return;
+		}
+		put(obj);
+	}
+
+	@Override
+	public synchronized void fill(List<T> list) {
+		purge();
+		cacheMap.clear();
+		list.forEach(elt -> put(elt));
+		complete = true;
+		completeAt = System.currentTimeMillis();
+	}
+
+	@Override
+	public synchronized void remove(long id) {
+		cacheMap.remove(id);
+	}
+
+	@Override
+	public synchronized void invalidate(long id) {
+		remove(id);
+		complete = false;
+	}
+
+	@Override
+	public synchronized void clear() {
+		cacheMap.clear();
+		complete = false;
+	}
+
+	@Override
+	public synchronized int size() {
+		purge();
+		return cacheMap.size();
+	}
+
+	private void put(T obj) {
+		// Si l'objet à un id invalide
+		if (obj.getId() <= 0) {
+			return;
+		}
+		purge();
+		long expireAt = (ttl > 0) ? System.currentTimeMillis() + ttl : 0;
+		Reference<T> ref = null;
+		if (reference == CacheReference.SOFT) {
+			ref = new SoftEntry<>(obj, obj.getId(), collectedQueue);
+		} else if (reference == CacheReference.WEAK) {
+			ref = new WeakEntry<>(obj, obj.getId(), collectedQueue);
+		}
+		cacheMap.put(obj.getId(), new CacheEntry<>((ref == null) ? obj : null, ref, expireAt));
+	}
+
+	/**
+	 * Retire les entrées dont l'entité a été libérée par le ramasse-miettes
+	 */
+	private void purge() {
+		Reference<? extends T> ref;
+		while ((ref = collectedQueue.poll()) != null) {
+			long id = ((KeyedReference) ref).id();
+			CacheEntry<T> entry = cacheMap.get(id);
+			// L'entrée a pu être remplacée depuis
+			if (entry != null && entry.ref == ref) {
+				cacheMap.remove(id);
+				complete = false;
+				collected++;
+			}
+		}
+	}
+
+	private static class CacheEntry<T> {
+
+		private final T value;
+		private final Reference<T> ref;
+		private final long expireAt;
+
+		private CacheEntry(T value, Reference<T> ref, long expireAt) {
+			this.value = value;
+			this.ref = ref;
+			this.expireAt = expireAt;
+		}
+
+		private T get() {
+			return (ref == null) ? value : ref.get();
+		}
+
+		private boolean isExpired() {
+			return expireAt > 0 && System.currentTimeMillis() > expireAt;
+		}
+
+	}
+
+	private interface KeyedReference {
+
+		long id();
+
+	}
+
+	private static class SoftEntry<T> extends SoftReference<T> implements KeyedReference {
+
+		private final long id;
+
+		private SoftEntry(T value, long id, ReferenceQueue<T> queue) {
+			super(value, queue);
+			this.id = id;
+		}
+
+		@Override
+		public long id() {
+			return id;
+		}
+
+	}
+
+	private static class WeakEntry<T> extends WeakReference<T> implements KeyedReference {
+
+		private final long id;
+
+		private WeakEntry(T value, long id, ReferenceQueue<T> queue) {
+			super(value, queue);
+			this.id = id;
+		}
+
+		@Override
+		public long id() {
+			return id;
+		}
+
+	}
+
+}
@@ -0,0 +1,29 @@
+package db.cache;
+
+/**
+ * Cache négatif : les ids connus comme absents de la table
+ */
+public interface MissFilter {
+
+	/**
+	 * Indique si l'id est sûrement absent de la table
+	 * @param id
+	 * @return
+	 */
+	public boolean isMissing(long id);
+
+	/**
+	 * Une lecture en base n'a rien trouvé pour l'id
+	 * @param id
+	 */
+	public void missed(long id);
+
+	/**
+	 * L'id a été sauvegardé ou modifié ailleurs, il n'est plus absent
+	 * @param id
+	 */
+	public void added(long id);
+
+	public void clear();
+
+}
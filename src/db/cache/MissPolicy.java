@@ -0,0 +1,25 @@
+package db.cache;
+
+public enum MissPolicy {
+
+	/**
+	 * Utilise la valeur de la clef cache.negative du fichier de properties
+	 */
+	DEFAULT,
+
+	/**
+	 * Les ids absents ne sont pas retenus
+	 */
+	NONE,
+
+	/**
+	 * Les ids absents sont retenus dans un ensemble borné avec une durée de vie
+	 */
+	MISSES,
+
+	/**
+	 * Filtre de Bloom sur tous les ids de la table, un id hors du filtre est absent sans requête
+	 */
+	BLOOM
+
+}
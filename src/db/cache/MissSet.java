@@ -0,0 +1,60 @@
+package db.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ensemble borné des derniers ids absents, chaque id est oublié après ttl ms
+ */
+public class MissSet implements MissFilter {
+
+	private final long ttl;
+	private final Map<Long, Long> misses;
+
+	/**
+	 * @param maxSize Nombre max d'ids retenus, les plus anciens sont oubliés
+	 * @param ttl Durée de vie d'un id en ms (0 = illimité)
+	 */
+	public MissSet(int maxSize, long ttl) {
+		this.ttl = ttl;
+		this.misses = new LinkedHashMap<Long, Long>(16, 0.75f, false) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+				return size() > maxSize;
+			}
+
+		};
+	}
+
+	@Override
+	public synchronized boolean isMissing(long id) {
+		Long expireAt = misses.get(id);
+		if (expireAt == null) {
+			return false;
+		}
+		if (expireAt > 0 && System.currentTimeMillis() > expireAt) {
+			misses.remove(id);
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public synchronized void missed(long id) {
+		misses.put(id, (ttl > 0) ? System.currentTimeMillis() + ttl : 0);
+	}
+
+	@Override
+	public synchronized void added(long id) {
+		misses.remove(id);
+	}
+
+	@Override
+	public synchronized void clear() {
+		misses.clear();
+	}
+
+}
@@ -0,0 +1,80 @@
+package db.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import db.Persistable;
+
+public class NoCache<T extends Persistable> implements TableCache<T> {
+
+	@Override
+	public CachePolicy getPolicy() {
+		return CachePolicy.NONE;
+	}
+
+	@Override
+	public CacheReference getReference() {
+		return CacheReference.STRONG;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return false;
+	}
+
+	@Override
+	public boolean isComplete() {
+		return false;
+	}
+
+	@Override
+	public boolean contains(long id) {
+		return false;
+	}
+
+	@Override
+	public T get(long id) {
+		return null;
+	}
+
+	@Override
+	public List<T> getAll() {
+		return new ArrayList<>();
+	}
+
+	@Override
+	public void read(T obj) {
+		// Rien à faire
+	}
+
+	@Override
+	public void write(T obj) {
+		// Rien à faire
+	}
+
+	@Override
+	public void fill(List<T> list) {
+		// Rien à faire
+	}
+
+	@Override
+	public void remove(long id) {
+		// Rien à faire
+	}
+
+	@Override
+	public void invalidate(long id) {
+		// Rien à faire
+	}
+
+	@Override
+	public void clear() {
+		// Rien à faire
+	}
+
+	@Override
+	public int size() {
+		return 0;
+	}
+
+}
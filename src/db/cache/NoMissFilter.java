@@ -0,0 +1,25 @@
+package db.cache;
+
+public class NoMissFilter implements MissFilter {
+
+	@Override
+	public boolean isMissing(long id) {
+		return false;
+	}
+
+	@Override
+	public void missed(long id) {
+		// Rien à retenir
+	}
+
+	@Override
+	public void added(long id) {
+		// Rien à retenir
+	}
+
+	@Override
+	public void clear() {
+		// Rien à vider
+	}
+
+}
@@ -0,0 +1,332 @@
+package db.cache;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import db.Persistable;
+import db.mapper.RowCodec;
+
+/**
+ * Cache hors du tas : les entités sont stockées au format RowCodec dans des ByteBuffer directs
+ * L'index id -> position est une table de long, l'entité est recréée à chaque lecture
+ * Enregistrement : [int longueur][long expiration][ligne]
+ */
+public class OffHeapCache<T extends Persistable> implements TableCache<T> {
+
+	private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+	private static final long ABSENT = -1;
+
+	private final CachePolicy policy;
+	private final int maxSize;
+	private final long ttl;
+	private final int segmentSize;
+	private final int maxSegments;
+	private final RowCodec<T> codec;
+	private final LongLongMap index = new LongLongMap();
+	private final List<ByteBuffer> segments = new ArrayList<>();
+	private ByteBuffer scratch = ByteBuffer.allocate(1024);
+	private long usedBytes = 0;
+	private long liveBytes = 0;
+	private boolean complete = false;
+	private long completeAt = 0;
+
+	/**
+	 * @param entity La classe de l'entité
+	 * @param policy La politique de cache (READ_THROUGH, WRITE_THROUGH ou FULL_TABLE)
+	 * @param maxSize Nombre max d'entités en cache (0 = illimité, ignoré pour FULL_TABLE)
+	 * @param ttl Durée de vie d'une entité en cache en ms (0 = illimité)
+	 * @param segmentSize Taille d'un segment en octets
+	 * @param maxBytes Taille max du cache en octets
+	 */
+	public OffHeapCache(Class<T> entity, CachePolicy policy, int maxSize, long ttl, int segmentSize, long maxBytes) {
+		this.codec = new RowCodec<>(entity);
+		this.policy = policy;
+		this.maxSize = (policy == CachePolicy.FULL_TABLE) ? 0 : maxSize;
+		this.ttl = ttl;
+		this.segmentSize = segmentSize;
+		this.maxSegments = (int) Math.max(1, maxBytes / segmentSize);
+	}
+
+	@Override
+	public CacheReference getReference() {
+		return CacheReference.STRONG;
+	}
+
+	@Override
+	public CachePolicy getPolicy() {
+		return policy;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+
+	@Override
+	public synchronized boolean isComplete() {
+		if (complete && ttl > 0 && System.currentTimeMillis() - completeAt > ttl) {
+			clear();
+		}
+		return complete;
+	}
+
+	@Override
+	public synchronized boolean contains(long id) {
+		return record(id) != null;
+	}
+
+	@Override
+	public T get(long id) {
+		// Entité non sauvegardée
+		if (id <= 0) {
+			return null;
+		}
+		long[] linkIds = new long[codec.linkCount()];
+		T obj;
+		synchronized (this) {
+			ByteBuffer record = record(id);
+			if (record == null) {
+				return null;
+			}
+			obj = codec.decode(record, linkIds, 0);
+		}
+		// Les entités liées sont lues hors du verrou, elles peuvent venir de la base ou d'un autre cache
+		codec.resolveLinks(obj, linkIds, 0);
+		return obj;
+	}
+
+	@Override
+	public List<T> getAll() {
+		int links = codec.linkCount();
+		List<T> list;
+		long[] linkIds;
+		synchronized (this) {
+			list = new ArrayList<>(index.size());
+			linkIds = new long[index.size() * links];
+			index.forEachKey(id -> {
+				ByteBuffer record = at(index.get(id, ABSENT));
+				record.position(record.position() + HEADER_SIZE);
+				list.add(codec.decode(record, linkIds, list.size() * links));
+			});
+		}
+		for (int i = 0; i < list.size(); i++) {
+			codec.resolveLinks(list.get(i), linkIds, i * links);
+		}
+		return list;
+	}
+
+	@Override
+	public synchronized void read(T obj) {
+		put(obj);
+	}
+
+	@Override
+	public synchronized void write(T obj) {
+		// En read-through on retire l'entité, elle sera rechargée à la prochaine lecture
+		if (policy == CachePolicy.READ_THROUGH) {
+			remove(obj.getId());
+			return;
+		}
+		put(obj);
+	}
+
+	@Override
+	public synchronized void fill(List<T> list) {
+		clear();
+		list.forEach(elt -> put(elt));
+		// Si tout ne tient pas en mémoire la table n'est pas complète
+		complete = (index.size() == list.stream().filter(elt -> elt.getId() > 0).count());
+		completeAt = System.currentTimeMillis();
+	}
+
+	@Override
+	public synchronized void remove(long id) {
+		if (id <= 0) {
+			return;
+		}
+		long address = index.get(id, ABSENT);
+		if (address == ABSENT) {
+			return;
+		}
+		liveBytes -= at(address).getInt();
+		index.remove(id);
+	}
+
+	@Override
+	public synchronized void invalidate(long id) {
+		remove(id);
+		complete = false;
+	}
+
+	@Override
+	public synchronized void clear() {
+		index.clear();
+		segments.clear();
+		usedBytes = 0;
+		liveBytes = 0;
+		complete = false;
+	}
+
+	@Override
+	public synchronized int size() {
+		return index.size();
+	}
+
+	/**
+	 * Octets occupés par les entités présentes dans le cache
+	 * @return
+	 */
+	public synchronized long getLiveBytes() {
+		return liveBytes;
+	}
+
+	/**
+	 * Octets réservés hors du tas
+	 * @return
+	 */
+	public synchronized long getAllocatedBytes() {
+		return (long) segments.size() * segmentSize;
+	}
+
+	private void put(T obj) {
+		// Si l'objet à un id invalide
+		if (obj.getId() <= 0) {
+			return;
+		}
+		// Cache plein, seules les entités déjà présentes sont mises à jour
+		if (maxSize > 0 && index.size() >= maxSize && !index.containsKey(obj.getId())) {
+			return;
+		}
+		int length = encode(obj);
+		if (length > segmentSize) {
+			remove(obj.getId());
+			return;
+		}
+		ByteBuffer segment = segmentFor(length);
+		if (segment == null) {
+			remove(obj.getId());
+			return;
+		}
+		remove(obj.getId());
+		long address = ((long) (segments.size() - 1) << 32) | segment.position();
+		segment.put(scratch);
+		index.put(obj.getId(), address);
+		usedBytes += length;
+		liveBytes += length;
+	}
+
+	private int encode(T obj) {
+		long expireAt = (ttl > 0) ? System.currentTimeMillis() + ttl : 0;
+		while (true) {
+			try {
+				scratch.clear();
+				scratch.putInt(0);
+				scratch.putLong(expireAt);
+				codec.encode(obj, scratch);
+				scratch.putInt(0, scratch.position());
+				scratch.flip();
+				return scratch.limit();
+			} catch (BufferOverflowException e) {
+				scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+			}
+		}
+	}
+
+	private ByteBuffer segmentFor(int length) {
+		if (!segments.isEmpty()) {
+			ByteBuffer last = segments.get(segments.size() - 1);
+			if (last.remaining() >= length) {
+				return last;
+			}
+		}
+		if (segments.size() < maxSegments) {
+			ByteBuffer segment = ByteBuffer.allocateDirect(segmentSize);
+			segments.add(segment);
+			return segment;
+		}
+		// Plus de place, on récupère l'espace des entités remplacées ou supprimées
+		if (liveBytes < usedBytes) {
+			compact();
+			ByteBuffer last = segments.get(segments.size() - 1);
+			if (last.remaining() >= length) {
+				return last;
+			}
+			if (segments.size() < maxSegments) {
+				ByteBuffer segment = ByteBuffer.allocateDirect(segmentSize);
+				segments.add(segment);
+				return segment;
+			}
+		}
+		return null;
+	}
+
+	private void compact() {
+		// Entités triées par position : la copie avance toujours derrière la lecture
+		long[][] entries = new long[index.size()][];
+		int[] count = {0};
+		index.forEachKey(id -> entries[count[0]++] = new long[]{index.get(id, ABSENT), id});
+		Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+		List<ByteBuffer> oldSegments = new ArrayList<>(segments);
+		segments.clear();
+		oldSegments.forEach(segment -> segment.clear());
+		ByteBuffer current = oldSegments.get(0);
+		segments.add(current);
+		ByteBuffer copy = ByteBuffer.allocate(1024);
+		usedBytes = 0;
+		for (long[] entry : entries) {
+			ByteBuffer record = oldSegments.get((int) (entry[0] >>> 32)).duplicate();
+			record.position((int) entry[0]);
+			int length = record.getInt(record.position());
+			record.limit(record.position() + length);
+			// Copie par le buffer temporaire car source et destination peuvent se chevaucher
+			if (copy.capacity() < length) {
+				copy = ByteBuffer.allocate(length);
+			}
+			copy.clear();
+			copy.put(record);
+			copy.flip();
+			if (current.remaining() < length) {
+				current = oldSegments.get(segments.size());
+				segments.add(current);
+			}
+			index.put(entry[1], ((long) (segments.size() - 1) << 32) | current.position());
+			current.put(copy);
+			usedBytes += length;
+		}
+	}
+
+	/**
+	 * L'enregistrement de l'entité, positionné après l'entête
+	 * @param id
+	 * @return null si l'entité est absente ou expirée
+	 */
+	private ByteBuffer record(long id) {
+		if (id <= 0) {
+			return null;
+		}
+		long address = index.get(id, ABSENT);
+		if (address == ABSENT) {
+			return null;
+		}
+		ByteBuffer record = at(address);
+		record.getInt();
+		long expireAt = record.getLong();
+		// Entité expirée
+		if (expireAt > 0 && System.currentTimeMillis() > expireAt) {
+			remove(id);
+			complete = false;
+			return null;
+		}
+		return record;
+	}
+
+	private ByteBuffer at(long address) {
+		ByteBuffer record = segments.get((int) (address >>> 32)).duplicate();
+		record.position((int) address);
+		return record;
+	}
+
+}
@@ -0,0 +1,112 @@
+package db.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongToIntFunction;
+
+import db.Persistable;
+
+/**
+ * Un cache par shard, chaque entité est rangée dans le cache du shard propriétaire de son id
+ */
+public class ShardedCache<T extends Persistable> implements TableCache<T> {
+
+	private final List<TableCache<T>> caches;
+	private final LongToIntFunction shardOf;
+
+	public ShardedCache(List<TableCache<T>> caches, LongToIntFunction shardOf) {
+		this.caches = caches;
+		this.shardOf = shardOf;
+	}
+
+	@Override
+	public CacheReference getReference() {
+		return caches.get(0).getReference();
+	}
+
+	@Override
+	public CachePolicy getPolicy() {
+		return caches.get(0).getPolicy();
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return caches.get(0).isEnabled();
+	}
+
+	@Override
+	public boolean isComplete() {
+		for (TableCache<T> cache : caches) {
+			if (!cache.isComplete()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean contains(long id) {
+		return cache(id).contains(id);
+	}
+
+	@Override
+	public T get(long id) {
+		return cache(id).get(id);
+	}
+
+	@Override
+	public List<T> getAll() {
+		List<T> list = new ArrayList<>();
+		caches.forEach(cache -> list.addAll(cache.getAll()));
+		return list;
+	}
+
+	@Override
+	public void read(T obj) {
+		cache(obj.getId()).read(obj);
+	}
+
+	@Override
+	public void write(T obj) {
+		cache(obj.getId()).write(obj);
+	}
+
+	@Override
+	public void fill(List<T> list) {
+		List<List<T>> parts = new ArrayList<>();
+		caches.forEach(cache -> parts.add(new ArrayList<>()));
+		list.forEach(obj -> parts.get(shardOf.applyAsInt(obj.getId())).add(obj));
+		for (int i = 0; i < caches.size(); i++) {
+			caches.get(i).fill(parts.get(i));
+		}
+	}
+
+	@Override
+	public void remove(long id) {
+		cache(id).remove(id);
+	}
+
+	@Override
+	public void invalidate(long id) {
+		cache(id).invalidate(id);
+	}
+
+	@Override
+	public void clear() {
+		caches.forEach(TableCache::clear);
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for (TableCache<T> cache : caches) {
+			size += cache.size();
+		}
+		return size;
+	}
+
+	private TableCache<T> cache(long id) {
+		return caches.get(shardOf.applyAsInt(id));
+	}
+
+}
@@ -0,0 +1,65 @@
+package db.cache;
+
+import java.util.List;
+
+import db.Persistable;
+
+public interface TableCache<T extends Persistable> {
+
+	public CachePolicy getPolicy();
+
+	public boolean isEnabled();
+	
+	/**
+	 * Référence des entités en cache, STRONG hors du tas
+	 * @return
+	 */
+	public CacheReference getReference();
+
+	/**
+	 * Indique si toutes les lignes de la table sont présentes dans le cache
+	 * @return
+	 */
+	public boolean isComplete();
+
+	public boolean contains(long id);
+
+	public T get(long id);
+
+	public List<T> getAll();
+
+	/**
+	 * Ajoute une entité venant d'une lecture en base
+	 * @param obj
+	 */
+	public void read(T obj);
+
+	/**
+	 * Ajoute une entité venant d'une sauvegarde
+	 * @param obj
+	 */
+	public void write(T obj);
+
+	/**
+	 * Remplace le contenu du cache par toute la table
+	 * @param list
+	 */
+	public void fill(List<T> list);
+
+	public void remove(long id);
+	
+	/**
+	 * Retire une entité modifiée ailleurs, le cache n'est plus considéré comme complet
+	 * @param id
+	 */
+	public void invalidate(long id);
+
+	public void clear();
+
+	/**
+	 * Nombre d'entités en cache, sans celles libérées par le ramasse-miettes
+	 * @return
+	 */
+	public int size();
+
+}
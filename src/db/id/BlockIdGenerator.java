@@ -0,0 +1,113 @@
+package db.id;
+
+import db.Database;
+
+/**
+ * Attribue les ids en mémoire par blocs : id = hi * taille du bloc + lo
+ * Un aller-retour en base n'est fait que pour réserver un nouveau bloc
+ * Un bloc réservé dans une transaction n'est utilisable que par son thread jusqu'à la fin de la transaction,
+ * et abandonné si elle est annulée car la réservation l'est aussi
+ */
+public abstract class BlockIdGenerator implements IdGenerator {
+
+	private final int blockSize;
+	private long current = 0;
+	private long max = 0;
+	private Thread pending = null;
+
+	protected BlockIdGenerator(int blockSize) {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("Block size must be positive");
+		}
+		this.blockSize = blockSize;
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	@Override
+	public synchronized long next() {
+		awaitPending();
+		if (current >= max) {
+			reserve(nextHi());
+		}
+		return current++;
+	}
+
+	@Override
+	public synchronized void skip(long maxId) {
+		awaitPending();
+		if (current > maxId) {
+			return;
+		}
+		if (maxId + 1 < max) {
+			current = maxId + 1;
+			return;
+		}
+		reserve(nextHi(maxId / blockSize + 1));
+	}
+
+	private void awaitPending() {
+		// Attente de la fin de la transaction qui a réservé le bloc courant
+		while (pending != null && pending != Thread.currentThread()) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for an id block", e);
+			}
+		}
+	}
+
+	private void reserve(long hi) {
+		current = hi * blockSize;
+		max = current + blockSize;
+		// L'id 0 correspond à une entité non sauvegardée
+		if (current == 0) {
+			current = 1;
+		}
+		if (isTransactional() && Database.isInTransaction()) {
+			pending = Thread.currentThread();
+			Database.onCompletion(this::reserved);
+		}
+	}
+
+	/**
+	 * Vrai si la réservation d'un bloc est annulée avec la transaction dans laquelle elle est faite
+	 * @return
+	 */
+	protected boolean isTransactional() {
+		return true;
+	}
+
+	private synchronized void reserved(boolean committed) {
+		if (!committed) {
+			// La base redonnera ce bloc, les ids déjà donnés ont été annulés avec la transaction
+			current = 0;
+			max = 0;
+		}
+		pending = null;
+		notifyAll();
+	}
+
+	/**
+	 * Réserve un nouveau bloc
+	 * @return Le numéro du bloc, jamais donné deux fois
+	 */
+	protected abstract long nextHi();
+
+	/**
+	 * Réserve un nouveau bloc à partir de minHi, les blocs sautés ne sont plus donnés
+	 * @param minHi
+	 * @return Le numéro du bloc, jamais donné deux fois
+	 */
+	protected long nextHi(long minHi) {
+		long hi;
+		do {
+			hi = nextHi();
+		} while (hi < minHi);
+		return hi;
+	}
+
+}
@@ -0,0 +1,83 @@
+package db.id;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import db.Database;
+import db.SchemaChecker;
+import db.mapper.ColumnMapper;
+
+/**
+ * Blocs réservés dans la table jasipe_hilo (une ligne par table)
+ * La réservation est un compare-and-set entre plusieurs processus
+ * Faite dans une transaction, elle est annulée avec elle et le bloc est alors abandonné (voir BlockIdGenerator)
+ */
+public class HiLoGenerator extends BlockIdGenerator {
+
+	public static final String TABLE = "jasipe_hilo";
+	private static final int MAX_ATTEMPT = 100;
+
+	private final String name;
+	private final long initialHi;
+	private boolean ready = false;
+
+	/**
+	 * @param name Nom de la table dont les ids sont générés
+	 * @param blockSize Taille d'un bloc
+	 * @param initialHi Premier bloc utilisable si la ligne n'existe pas encore
+	 */
+	public HiLoGenerator(String name, int blockSize, long initialHi) {
+		super(blockSize);
+		this.name = name.toUpperCase();
+		this.initialHi = initialHi;
+	}
+
+	@Override
+	protected long nextHi() {
+		return nextHi(0);
+	}
+
+	@Override
+	protected long nextHi(long minHi) {
+		init();
+		for (int i = 0; i < MAX_ATTEMPT; i++) {
+			Optional<Long> hi = Database.queryForUpdate("Select next_hi From " + TABLE + " Where name = ?", Arrays.asList(name), ColumnMapper.longValue());
+			if (!hi.isPresent()) {
+				throw new IllegalStateException("Unable to read the hi value of " + name);
+			}
+			long reserved = Math.max(hi.get(), minHi);
+			if (Database.execute("Update " + TABLE + " Set next_hi = ? Where name = ? And next_hi = ?", Arrays.asList(reserved + 1, name, hi.get()))) {
+				return reserved;
+			}
+		}
+		throw new IllegalStateException("Unable to reserve an id block for " + name);
+	}
+
+	private void init() {
+		if (ready) {
+			return;
+		}
+		boolean created = false;
+		if (!new SchemaChecker(Database.getDb(), false).tableExists(TABLE)) {
+			Database.execute("Create Table " + TABLE + " (name VARCHAR(128) NOT NULL PRIMARY KEY, next_hi BIGINT NOT NULL)");
+			created = true;
+		}
+		if (!Database.queryForUpdate("Select 1 From " + TABLE + " Where name = ?", Arrays.asList(name), ColumnMapper.exists()).orElse(false)) {
+			// Echoue sans conséquence si un autre processus a créé la ligne entre temps
+			Database.execute("Insert into " + TABLE + "(name, next_hi) Values(?,?)", Arrays.asList(name, initialHi));
+			created = true;
+		}
+		if (created && Database.isInTransaction()) {
+			// Créée dans la transaction de l'appelant, elle disparait si la transaction est annulée
+			Database.onCompletion(this::initialized);
+		}
+		ready = true;
+	}
+
+	private synchronized void initialized(boolean committed) {
+		if (!committed) {
+			ready = false;
+		}
+	}
+
+}
@@ -0,0 +1,15 @@
+package db.id;
+
+@FunctionalInterface
+public interface IdGenerator {
+
+	public long next();
+
+	/**
+	 * Les prochains ids seront plus grands que maxId, après l'insertion d'ids explicites (import)
+	 * @param maxId
+	 */
+	public default void skip(long maxId) {
+	}
+
+}
@@ -0,0 +1,69 @@
+package db.id;
+
+import java.lang.reflect.Field;
+import java.util.logging.Logger;
+
+import db.Aggregate;
+import db.Database;
+import db.DatabaseUtils;
+import db.Dialect;
+import db.SQLQueryBuilder;
+import db.annotation.DbId;
+import db.annotation.DbTable;
+import db.mapper.ColumnMapper;
+
+public class IdGenerators {
+
+	private static final Logger LOGGER = Logger.getLogger(IdGenerators.class.getName());
+
+	/**
+	 * Crée le générateur déclaré sur l'id de l'entité
+	 * @param dbTable
+	 * @param idField
+	 * @return Le générateur, ou null pour IDENTITY
+	 */
+	public static IdGenerator create(DbTable dbTable, Field idField) {
+		DbId dbId = idField.getAnnotation(DbId.class);
+		IdStrategy strategy = dbId.strategy();
+		if (strategy == IdStrategy.IDENTITY) {
+			return null;
+		}
+		return create(dbTable, idField, maxId(dbTable, idField));
+	}
+	
+	/**
+	 * Crée le générateur déclaré sur l'id de l'entité
+	 * @param dbTable
+	 * @param idField
+	 * @param maxId Le plus grand id déjà présent, les blocs commencent après
+	 * @return Le générateur, ou null pour IDENTITY
+	 */
+	public static IdGenerator create(DbTable dbTable, Field idField, long maxId) {
+		DbId dbId = idField.getAnnotation(DbId.class);
+		IdStrategy strategy = dbId.strategy();
+		if (strategy == IdStrategy.IDENTITY) {
+			return null;
+		}
+		long initialHi = maxId / dbId.blockSize() + 1;
+		if (strategy == IdStrategy.SEQUENCE) {
+			if (Database.getDialect() == Dialect.DERBY) {
+				String sequence = dbId.sequence().isEmpty() ? dbTable.name() + "_seq" : dbId.sequence();
+				return new SequenceGenerator(sequence, dbId.blockSize(), initialHi);
+			}
+			LOGGER.warning("Sequences are not supported by this database, using hi/lo for " + dbTable.name());
+		}
+		return new HiLoGenerator(dbTable.name(), dbId.blockSize(), initialHi);
+	}
+	
+	/**
+	 * Le plus grand id de la table, lu sur la connexion d'écriture
+	 * @param dbTable
+	 * @param idField
+	 * @return
+	 */
+	public static long maxId(DbTable dbTable, Field idField) {
+		SQLQueryBuilder sql = SQLQueryBuilder.aggregateQuery(dbTable.name(), Aggregate.MAX, DatabaseUtils.getDbField(idField));
+		return Database.queryForUpdate(sql.toString(), sql.getParams(), ColumnMapper.longValue()).orElse(0L);
+	}
+
+}
@@ -0,0 +1,20 @@
+package db.id;
+
+public enum IdStrategy {
+
+	/**
+	 * L'id est généré par la base à l'insertion (getGeneratedKeys)
+	 */
+	IDENTITY,
+
+	/**
+	 * Blocs d'ids réservés dans une table (hi/lo), attribués en mémoire avant l'insertion
+	 */
+	HILO,
+
+	/**
+	 * Blocs d'ids réservés avec une séquence Derby, HILO sur les bases sans séquence
+	 */
+	SEQUENCE
+
+}
@@ -0,0 +1,57 @@
+package db.id;
+
+import java.util.Arrays;
+
+import db.Database;
+import db.mapper.ColumnMapper;
+
+/**
+ * Blocs réservés avec une séquence Derby : chaque valeur de la séquence est un bloc
+ */
+public class SequenceGenerator extends BlockIdGenerator {
+
+	private final String sequence;
+	private final long initialHi;
+	private boolean ready = false;
+
+	public SequenceGenerator(String sequence, int blockSize, long initialHi) {
+		super(blockSize);
+		this.sequence = sequence.toUpperCase();
+		this.initialHi = initialHi;
+	}
+
+	@Override
+	protected long nextHi() {
+		init();
+		return Database.queryForUpdate("Values Next Value For " + sequence, Arrays.asList(), ColumnMapper.longValue())
+				.orElseThrow(() -> new IllegalStateException("Unable to read the sequence " + sequence));
+	}
+
+	@Override
+	protected boolean isTransactional() {
+		// Une valeur de séquence n'est jamais rendue, même si la transaction est annulée
+		return false;
+	}
+
+	private void init() {
+		if (ready) {
+			return;
+		}
+		boolean created = !Database.queryForUpdate("Select 1 From SYS.SYSSEQUENCES Where SEQUENCENAME = ?", Arrays.asList(sequence), ColumnMapper.exists()).orElse(false);
+		if (created) {
+			Database.execute("Create Sequence " + sequence + " As BIGINT Start With " + initialHi);
+		}
+		if (created && Database.isInTransaction()) {
+			// Créée dans la transaction de l'appelant, elle disparait si la transaction est annulée
+			Database.onCompletion(this::initialized);
+		}
+		ready = true;
+	}
+
+	private synchronized void initialized(boolean committed) {
+		if (!committed) {
+			ready = false;
+		}
+	}
+
+}
@@ -0,0 +1,232 @@
+package db.mapper;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lecture de colonnes dans des tableaux primitifs avec les getters typés
+ * Une valeur NULL est lue comme 0 (ou null pour les chaines)
+ */
+public class ColumnMapper {
+
+	private static final int INITIAL_SIZE = 64;
+
+	public static ResultSetMapper<long[]> longColumn() {
+		return rs -> {
+			try {
+				long[] values = new long[INITIAL_SIZE];
+				int size = 0;
+				while (rs.next()) {
+					if (size == values.length) {
+						values = Arrays.copyOf(values, size * 2);
+					}
+					values[size++] = rs.getLong(1);
+				}
+				return Arrays.copyOf(values, size);
+			} catch (SQLException e) {
+				throw new IllegalStateException("Unable to read the column", e);
+			}
+		};
+	}
+
+	public static ResultSetMapper<double[]> doubleColumn() {
+		return rs -> {
+			try {
+				double[] values = new double[INITIAL_SIZE];
+				int size = 0;
+				while (rs.next()) {
+					if (size == values.length) {
+						values = Arrays.copyOf(values, size * 2);
+					}
+					values[size++] = rs.getDouble(1);
+				}
+				return Arrays.copyOf(values, size);
+			} catch (SQLException e) {
+				throw new IllegalStateException("Unable to read the column", e);
+			}
+		};
+	}
+
+	public static ResultSetMapper<String[]> stringColumn() {
+		return rs -> {
+			try {
+				String[] values = new String[INITIAL_SIZE];
+				int size = 0;
+				while (rs.next()) {
+					if (size == values.length) {
+						values = Arrays.copyOf(values, size * 2);
+					}
+					values[size++] = rs.getString(1);
+				}
+				return Arrays.copyOf(values, size);
+			} catch (SQLException e) {
+				throw new IllegalStateException("Unable to read the column", e);
+			}
+		};
+	}
+
+	public static ResultSetMapper<ColumnSet> columns() {
+		return rs -> {
+			try {
+				// Type de chaque colonne selon les métadonnées
+				ResultSetMetaData meta = rs.getMetaData();
+				int count = meta.getColumnCount();
+				List<String> names = new ArrayList<>(count);
+				int[] kinds = new int[count];
+				Object[] columns = new Object[count];
+				for (int i = 0; i < count; i++) {
+					names.add(meta.getColumnLabel(i + 1));
+					kinds[i] = kind(meta.getColumnType(i + 1));
+					columns[i] = newArray(kinds[i], INITIAL_SIZE);
+				}
+				int size = 0;
+				int capacity = INITIAL_SIZE;
+				while (rs.next()) {
+					if (size == capacity) {
+						capacity *= 2;
+						for (int i = 0; i < count; i++) {
+							columns[i] = grow(columns[i], capacity);
+						}
+					}
+					for (int i = 0; i < count; i++) {
+						switch (kinds[i]) {
+							case Types.BIGINT:
+								((long[]) columns[i])[size] = rs.getLong(i + 1);
+								break;
+							case Types.DOUBLE:
+								((double[]) columns[i])[size] = rs.getDouble(i + 1);
+								break;
+							default:
+								((String[]) columns[i])[size] = rs.getString(i + 1);
+						}
+					}
+					size++;
+				}
+				for (int i = 0; i < count; i++) {
+					columns[i] = grow(columns[i], size);
+				}
+				return new ColumnSet(names, columns, size);
+			} catch (SQLException e) {
+				throw new IllegalStateException("Unable to read the columns", e);
+			}
+		};
+	}
+
+	public static ResultSetMapper<Long> longValue() {
+		return rs -> {
+			try {
+				if (!rs.next()) {
+					return null;
+				}
+				long value = rs.getLong(1);
+				return rs.wasNull() ? null : value;
+			} catch (SQLException e) {
+				throw new IllegalStateException("Unable to read the value", e);
+			}
+		};
+	}
+	
+	public static ResultSetMapper<Double> doubleValue() {
+		return rs -> {
+			try {
+				if (!rs.next()) {
+					return null;
+				}
+				double value = rs.getDouble(1);
+				return rs.wasNull() ? null : value;
+			} catch (SQLException e) {
+				throw new IllegalStateException("Unable to read the value", e);
+			}
+		};
+	}
+	
+	public static ResultSetMapper<Boolean> exists() {
+		return rs -> {
+			try {
+				return rs.next();
+			} catch (SQLException e) {
+				throw new IllegalStateException("Unable to read the value", e);
+			}
+		};
+	}
+	
+	/**
+	 * Regroupement : la première colonne est la clef, la deuxième la valeur
+	 * @return
+	 */
+	public static ResultSetMapper<Map<Object, Double>> groupMap() {
+		return rs -> {
+			try {
+				Map<Object, Double> map = new LinkedHashMap<>();
+				while (rs.next()) {
+					map.put(rs.getObject(1), rs.getDouble(2));
+				}
+				return map;
+			} catch (SQLException e) {
+				throw new IllegalStateException("Unable to read the values", e);
+			}
+		};
+	}
+	
+	public static ResultSetMapper<Map<Object, Long>> countMap() {
+		return rs -> {
+			try {
+				Map<Object, Long> map = new LinkedHashMap<>();
+				while (rs.next()) {
+					map.put(rs.getObject(1), rs.getLong(2));
+				}
+				return map;
+			} catch (SQLException e) {
+				throw new IllegalStateException("Unable to read the values", e);
+			}
+		};
+	}
+	
+	private static int kind(int sqlType) {
+		switch (sqlType) {
+			case Types.BIGINT:
+			case Types.INTEGER:
+			case Types.SMALLINT:
+			case Types.TINYINT:
+			case Types.BOOLEAN:
+			case Types.BIT:
+				return Types.BIGINT;
+			case Types.DOUBLE:
+			case Types.FLOAT:
+			case Types.REAL:
+			case Types.DECIMAL:
+			case Types.NUMERIC:
+				return Types.DOUBLE;
+			default:
+				return Types.VARCHAR;
+		}
+	}
+
+	private static Object newArray(int kind, int size) {
+		switch (kind) {
+			case Types.BIGINT:
+				return new long[size];
+			case Types.DOUBLE:
+				return new double[size];
+			default:
+				return new String[size];
+		}
+	}
+
+	private static Object grow(Object array, int size) {
+		if (array instanceof long[]) {
+			return Arrays.copyOf((long[]) array, size);
+		}
+		if (array instanceof double[]) {
+			return Arrays.copyOf((double[]) array, size);
+		}
+		return Arrays.copyOf((String[]) array, size);
+	}
+
+}
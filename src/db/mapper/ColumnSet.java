@@ -0,0 +1,79 @@
+package db.mapper;
+
+import java.util.List;
+
+/**
+ * Colonnes lues sans créer d'entité
+ * Les colonnes entières sont en long[], les décimales en double[] et les autres en String[]
+ */
+public class ColumnSet {
+
+	private final List<String> names;
+	private final Object[] columns;
+	private final int size;
+
+	ColumnSet(List<String> names, Object[] columns, int size) {
+		this.names = names;
+		this.columns = columns;
+		this.size = size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public List<String> getNames() {
+		return names;
+	}
+
+	public boolean isLong(String column) {
+		return column(column) instanceof long[];
+	}
+
+	public boolean isDouble(String column) {
+		return column(column) instanceof double[];
+	}
+
+	public long[] getLong(String column) {
+		Object data = column(column);
+		if (!(data instanceof long[])) {
+			throw new IllegalArgumentException("Column " + column + " is not an integer column");
+		}
+		return (long[]) data;
+	}
+
+	public double[] getDouble(String column) {
+		Object data = column(column);
+		if (data instanceof long[]) {
+			// Conversion d'une colonne entière
+			long[] values = (long[]) data;
+			double[] result = new double[values.length];
+			for (int i = 0; i < values.length; i++) {
+				result[i] = values[i];
+			}
+			return result;
+		}
+		if (!(data instanceof double[])) {
+			throw new IllegalArgumentException("Column " + column + " is not a numeric column");
+		}
+		return (double[]) data;
+	}
+
+	public String[] getString(String column) {
+		Object data = column(column);
+		if (!(data instanceof String[])) {
+			throw new IllegalArgumentException("Column " + column + " is not a text column");
+		}
+		return (String[]) data;
+	}
+
+	private Object column(String column) {
+		for (int i = 0; i < names.size(); i++) {
+			if (names.get(i).equalsIgnoreCase(column)) {
+				return columns[i];
+			}
+		}
+		throw new IllegalArgumentException("Unknown column " + column);
+	}
+
+}
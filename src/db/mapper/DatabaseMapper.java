@@ -1,86 +1,215 @@
 package db.mapper;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 
+import db.Database;
+import db.DatabaseProperties;
 import db.DatabaseTable;
 import db.DatabaseUtils;
+import db.Persistable;
+import db.SQLQueryBuilder;
 import db.annotation.DbTable;
 
 public class DatabaseMapper {
 	
+	/**
+	 * Nombre de lignes à partir duquel les liens des entités sont chargés en parallèle (0 = désactivé)
+	 */
+	private static final int PARALLEL_THRESHOLD = DatabaseProperties.getInt("mapper.parallel", 0);
+	private static final int PARALLEL_BATCH = 256;
+	
 	public static <T> ResultSetMapper<T> objectMapper(DbTable dbTable) {
-		return rs -> {
-			try {
-				T obj = (T) dbTable.entity().getConstructor().newInstance();
-				if (!rs.next()) {
-					return null;
+		return deferred((rs, after) -> {
+			if (!rs.next()) {
+				return null;
+			}
+			EntityReader reader = EntityReader.of(dbTable.entity());
+			long[] linkIds = new long[reader.linkCount()];
+			T obj = reader.read(rs, reader.resolve(rs), linkIds, 0);
+			if (linkIds.length > 0) {
+				after.accept(() -> reader.resolveLinks(obj, linkIds, 0));
+			}
+			return obj;
+		});
+	}
+	
+	public static <T> ResultSetMapper<List<T>> listMapper(DbTable dbTable) {
+		return deferred((rs, after) -> {
+			EntityReader reader = EntityReader.of(dbTable.entity());
+			// Index des colonnes recherchés une seule fois pour tout le résultat
+			int[] indexes = reader.resolve(rs);
+			List<T> list = new ArrayList<>();
+			int links = reader.linkCount();
+			if (links == 0) {
+				while (rs.next()) {
+					list.add(reader.read(rs, indexes, null, 0));
+				}
+				return list;
+			}
+			// Les liens sont chargés une fois la connexion rendue, en parallèle si le résultat est assez grand
+			long[] ids = new long[links * 64];
+			while (rs.next()) {
+				int offset = list.size() * links;
+				if (offset + links > ids.length) {
+					ids = Arrays.copyOf(ids, ids.length * 2);
+				}
+				list.add(reader.read(rs, indexes, ids, offset));
+			}
+			long[] linkIds = ids;
+			after.accept(() -> {
+				// Les threads du pool ne voient pas la transaction du thread appelant
+				if (PARALLEL_THRESHOLD > 0 && list.size() >= PARALLEL_THRESHOLD && !Database.isInTransaction()) {
+					ForkJoinPool.commonPool().invoke(new LinkTask(reader, list, linkIds, 0, list.size()));
+				} else {
+					for (int i = 0; i < list.size(); i++) {
+						reader.resolveLinks(list.get(i), linkIds, i * links);
+					}
+				}
+			});
+			return list;
+		});
+	}
+	
+	/**
+	 * Entités lues avec SQLQueryBuilder.joinQuery, les liens joints sont construits depuis la même ligne
+	 * @param dbTable
+	 * @param joins Les champs liés joints, dans l'ordre des jointures
+	 * @return
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public static <T> ResultSetMapper<List<T>> joinMapper(DbTable dbTable, List<Field> joins) {
+		return deferred((rs, after) -> {
+			EntityReader reader = EntityReader.of(dbTable.entity());
+			int[] indexes = reader.resolve(rs);
+			int links = reader.linkCount();
+			// Pour chaque lien : son numéro de jointure, -1 s'il est chargé par son id
+			int[] joinOf = new int[links];
+			EntityReader[] joinReaders = new EntityReader[links];
+			int[][] joinIndexes = new int[links][];
+			DatabaseTable[] joinTables = new DatabaseTable[links];
+			boolean byId = false;
+			for (int n = 0; n < links; n++) {
+				Field field = reader.linkField(n);
+				joinOf[n] = joins.indexOf(field);
+				byId |= joinOf[n] < 0;
+				if (joinOf[n] >= 0) {
+					joinReaders[n] = EntityReader.of(field.getType());
+					joinIndexes[n] = joinReaders[n].resolve(rs, SQLQueryBuilder.joinAlias(joinOf[n]));
+					joinTables[n] = DatabaseUtils.getDatabaseTable(field);
+				}
+			}
+			List<T> list = new ArrayList<>();
+			// Id des liens de chaque ligne, ceux qui ne sont pas joints sont chargés une fois la connexion rendue
+			long[] ids = new long[Math.max(links, 1) * 64];
+			while (rs.next()) {
+				int offset = list.size() * links;
+				if (offset + links > ids.length) {
+					ids = Arrays.copyOf(ids, ids.length * 2);
 				}
-				for(Field field : dbTable.entity().getFields()) {
-					String dbfield;
-					if((dbfield = DatabaseUtils.getDbField(field)) == null) {
+				T obj = reader.read(rs, indexes, ids, offset);
+				for (int n = 0; n < links; n++) {
+					if (joinOf[n] < 0) {
 						continue;
 					}
-					// Recup valeur dans le resultat
-					Object value = rs.getObject(dbfield);
-					// Si lien avec une autre entité
-					String link = DatabaseUtils.getDbLink(field);
-					if(value != null && link != null) {
-						DatabaseUtils.checkIfPersistable(field);
-						Long otherId = (Long) value;
-						if(otherId == null || otherId == 0) {
-							value = null;
-						} else {
-							DatabaseTable table = DatabaseUtils.getDatabaseTable(field);
-							value = table.getById(otherId);
+					Object linked = null;
+					if (ids[offset + n] != 0) {
+						Persistable joined = joinReaders[n].read(rs, joinIndexes[n], null, 0);
+						// Sans ligne liée le Left Join donne un id null, lu comme 0
+						if (joined.getId() != 0) {
+							linked = joinTables[n].cacheJoined(joined);
 						}
 					}
-					field.set(obj, value);
+					reader.setLink(obj, n, linked, 0);
 				}
-				return obj;
-			} catch (InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException | NoSuchMethodException | SecurityException | SQLException e) {
-				throw new IllegalStateException("Unable to map value to the entity", e);
+				list.add(obj);
 			}
-		};
-	}
-	
-	public static <T> ResultSetMapper<List<T>> listMapper(DbTable dbTable) {
-		return rs -> {
-			try {
-				List<T> list = new ArrayList<>();
-				while(rs.next()) {
-					T obj = (T) dbTable.entity().getConstructor().newInstance();
-					for(Field field : dbTable.entity().getFields()) {
-						String dbfield;
-						if((dbfield = DatabaseUtils.getDbField(field)) == null) {
-							continue;
-						}
-						// Recup valeur dans le resultat
-						Object value = rs.getObject(dbfield);
-						// Si lien avec une autre entité
-						String link = DatabaseUtils.getDbLink(field);
-						if(value != null && link != null) {
-							DatabaseUtils.checkIfPersistable(field);
-							Long otherId = (Long) value;
-							if(otherId == null || otherId == 0) {
-								value = null;
-							} else {
-								DatabaseTable table = DatabaseUtils.getDatabaseTable(field);
-								value = table.getById(otherId);
+			if (byId) {
+				long[] linkIds = ids;
+				after.accept(() -> {
+					for (int i = 0; i < list.size(); i++) {
+						for (int n = 0; n < links; n++) {
+							if (joinOf[n] < 0) {
+								reader.setLink(list.get(i), n, null, linkIds[i * links + n]);
 							}
 						}
-						field.set(obj, value);
 					}
-					list.add(obj);
+				});
+			}
+			return list;
+		});
+	}
+	
+	/**
+	 * Mapper dont la lecture peut laisser du travail à faire après avoir rendu la connexion, exécuté tout de suite par map
+	 * @param rows
+	 * @return
+	 */
+	private static <T> ResultSetMapper<T> deferred(RowsReader<T> rows) {
+		return new ResultSetMapper<T>() {
+			
+			@Override
+			public T map(ResultSet data) {
+				return read(data, Runnable::run);
+			}
+			
+			@Override
+			public T read(ResultSet data, Consumer<Runnable> after) {
+				try {
+					return rows.read(data, after);
+				} catch (SQLException e) {
+					throw new IllegalStateException("Unable to map value to the entity", e);
 				}
-				return list;
-			} catch (InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException | NoSuchMethodException | SecurityException | SQLException e) {
-				throw new IllegalStateException("Unable to map value to the entity");
 			}
+			
 		};
 	}
+	
+	@FunctionalInterface
+	private interface RowsReader<T> {
+		
+		T read(ResultSet rs, Consumer<Runnable> after) throws SQLException;
+		
+	}
+	
+	private static class LinkTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final EntityReader reader;
+		private final List<?> entities;
+		private final long[] linkIds;
+		private final int from;
+		private final int to;
+		
+		private LinkTask(EntityReader reader, List<?> entities, long[] linkIds, int from, int to) {
+			this.reader = reader;
+			this.entities = entities;
+			this.linkIds = linkIds;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from <= PARALLEL_BATCH) {
+				int links = reader.linkCount();
+				for (int i = from; i < to; i++) {
+					reader.resolveLinks(entities.get(i), linkIds, i * links);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new LinkTask(reader, entities, linkIds, from, middle), new LinkTask(reader, entities, linkIds, middle, to));
+		}
+		
+	}
 
 }
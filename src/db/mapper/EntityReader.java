@@ -0,0 +1,280 @@
+package db.mapper;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import db.DatabaseTable;
+import db.DatabaseUtils;
+
+/**
+ * Construction d'une entité depuis la ligne courante d'un ResultSet
+ * Chaque champ est lu avec le getter JDBC correspondant à son type et affecté avec le setter primitif
+ */
+class EntityReader {
+
+	private static final Map<Class<?>, EntityReader> READERS = new ConcurrentHashMap<>();
+
+	private enum Kind {
+		LONG, INT, SHORT, BYTE, DOUBLE, FLOAT, BOOLEAN, STRING, DECIMAL, BYTES, LINK, OBJECT
+	}
+
+	private final Constructor<?> constructor;
+	private final Field[] fields;
+	private final String[] columns;
+	private final Kind[] kinds;
+	private final boolean[] primitives;
+	private final int[] links;
+
+	private EntityReader(Class<?> entity) {
+		try {
+			this.constructor = entity.getConstructor();
+		} catch (NoSuchMethodException | SecurityException e) {
+			throw new IllegalStateException("Unable to find the default constructor of " + entity.getName(), e);
+		}
+		List<Field> list = new ArrayList<>();
+		for (Field field : entity.getFields()) {
+			if (DatabaseUtils.getDbField(field) != null) {
+				list.add(field);
+			}
+		}
+		int size = list.size();
+		fields = list.toArray(new Field[size]);
+		columns = new String[size];
+		kinds = new Kind[size];
+		primitives = new boolean[size];
+		List<Integer> linkList = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			Field field = fields[i];
+			columns[i] = DatabaseUtils.getDbField(field);
+			primitives[i] = field.getType().isPrimitive();
+			if (DatabaseUtils.getDbLink(field) != null) {
+				DatabaseUtils.checkIfPersistable(field);
+				kinds[i] = Kind.LINK;
+				linkList.add(i);
+			} else {
+				kinds[i] = kind(field.getType());
+			}
+		}
+		links = linkList.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	public static EntityReader of(Class<?> entity) {
+		return READERS.computeIfAbsent(entity, EntityReader::new);
+	}
+
+	/**
+	 * Nombre de liens vers d'autres entités
+	 * @return
+	 */
+	public int linkCount() {
+		return links.length;
+	}
+
+	/**
+	 * Recherche une seule fois l'index de chaque colonne dans le ResultSet
+	 * @param rs
+	 * @return
+	 * @throws SQLException
+	 */
+	public int[] resolve(ResultSet rs) throws SQLException {
+		return resolve(rs, "");
+	}
+
+	/**
+	 * Recherche l'index des colonnes préfixées, pour une entité lue par une jointure
+	 * @param rs
+	 * @param prefix
+	 * @return
+	 * @throws SQLException
+	 */
+	public int[] resolve(ResultSet rs, String prefix) throws SQLException {
+		int[] indexes = new int[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			indexes[i] = rs.findColumn(prefix + columns[i]);
+		}
+		return indexes;
+	}
+
+	/**
+	 * Le champ du lien n, dans l'ordre des ids remplis par read
+	 * @param n
+	 * @return
+	 */
+	public Field linkField(int n) {
+		return fields[links[n]];
+	}
+
+	/**
+	 * Affecte le lien n d'une entité lue avec read
+	 * @param obj
+	 * @param n
+	 * @param value L'entité liée, ou null pour la charger à partir de son id
+	 * @param id
+	 */
+	public void setLink(Object obj, int n, Object value, long id) {
+		Field field = linkField(n);
+		try {
+			field.set(obj, (value != null) ? value : link(field, id));
+		} catch (IllegalAccessException | IllegalArgumentException e) {
+			throw new IllegalStateException("Unable to map value to the entity", e);
+		}
+	}
+
+	/**
+	 * Construit l'entité de la ligne courante
+	 * @param rs
+	 * @param indexes Index des colonnes obtenus avec resolve
+	 * @param linkIds Reçoit l'id des liens à partir de offset, les liens sont résolus directement si null
+	 * @param offset
+	 * @return
+	 * @throws SQLException
+	 */
+	public <T> T read(ResultSet rs, int[] indexes, long[] linkIds, int offset) throws SQLException {
+		try {
+			T obj = (T) constructor.newInstance();
+			for (int i = 0; i < fields.length; i++) {
+				Field field = fields[i];
+				int index = indexes[i];
+				switch (kinds[i]) {
+					case LONG:
+						long l = rs.getLong(index);
+						if (primitives[i]) {
+							field.setLong(obj, l);
+						} else {
+							field.set(obj, rs.wasNull() ? null : l);
+						}
+						break;
+					case INT:
+						int n = rs.getInt(index);
+						if (primitives[i]) {
+							field.setInt(obj, n);
+						} else {
+							field.set(obj, rs.wasNull() ? null : n);
+						}
+						break;
+					case SHORT:
+						short s = rs.getShort(index);
+						if (primitives[i]) {
+							field.setShort(obj, s);
+						} else {
+							field.set(obj, rs.wasNull() ? null : s);
+						}
+						break;
+					case BYTE:
+						byte b = rs.getByte(index);
+						if (primitives[i]) {
+							field.setByte(obj, b);
+						} else {
+							field.set(obj, rs.wasNull() ? null : b);
+						}
+						break;
+					case DOUBLE:
+						double d = rs.getDouble(index);
+						if (primitives[i]) {
+							field.setDouble(obj, d);
+						} else {
+							field.set(obj, rs.wasNull() ? null : d);
+						}
+						break;
+					case FLOAT:
+						float f = rs.getFloat(index);
+						if (primitives[i]) {
+							field.setFloat(obj, f);
+						} else {
+							field.set(obj, rs.wasNull() ? null : f);
+						}
+						break;
+					case BOOLEAN:
+						boolean z = rs.getBoolean(index);
+						if (primitives[i]) {
+							field.setBoolean(obj, z);
+						} else {
+							field.set(obj, rs.wasNull() ? null : z);
+						}
+						break;
+					case STRING:
+						field.set(obj, rs.getString(index));
+						break;
+					case DECIMAL:
+						field.set(obj, rs.getBigDecimal(index));
+						break;
+					case BYTES:
+						field.set(obj, rs.getBytes(index));
+						break;
+					case LINK:
+						// Un lien null est lu comme l'id 0
+						long id = rs.getLong(index);
+						if (linkIds != null) {
+							linkIds[offset++] = id;
+						} else {
+							field.set(obj, link(field, id));
+						}
+						break;
+					default:
+						field.set(obj, rs.getObject(index));
+				}
+			}
+			return obj;
+		} catch (InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+			throw new IllegalStateException("Unable to map value to the entity", e);
+		}
+	}
+
+	/**
+	 * Affecte les liens d'une entité lue avec read à partir des ids récupérés
+	 * @param obj
+	 * @param linkIds
+	 * @param offset
+	 */
+	public void resolveLinks(Object obj, long[] linkIds, int offset) {
+		try {
+			for (int i : links) {
+				fields[i].set(obj, link(fields[i], linkIds[offset++]));
+			}
+		} catch (IllegalAccessException | IllegalArgumentException e) {
+			throw new IllegalStateException("Unable to map value to the entity", e);
+		}
+	}
+
+	private static Object link(Field field, long id) {
+		if (id == 0) {
+			return null;
+		}
+		DatabaseTable<?> table = DatabaseUtils.getDatabaseTable(field);
+		return table.getById(id);
+	}
+
+	private static Kind kind(Class<?> type) {
+		if (type == long.class || type == Long.class) {
+			return Kind.LONG;
+		} else if (type == int.class || type == Integer.class) {
+			return Kind.INT;
+		} else if (type == short.class || type == Short.class) {
+			return Kind.SHORT;
+		} else if (type == byte.class || type == Byte.class) {
+			return Kind.BYTE;
+		} else if (type == double.class || type == Double.class) {
+			return Kind.DOUBLE;
+		} else if (type == float.class || type == Float.class) {
+			return Kind.FLOAT;
+		} else if (type == boolean.class || type == Boolean.class) {
+			return Kind.BOOLEAN;
+		} else if (type == String.class) {
+			return Kind.STRING;
+		} else if (type == BigDecimal.class) {
+			return Kind.DECIMAL;
+		} else if (type == byte[].class) {
+			return Kind.BYTES;
+		}
+		return Kind.OBJECT;
+	}
+
+}
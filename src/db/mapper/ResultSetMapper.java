@@ -1,10 +1,21 @@
 package db.mapper;
 
 import java.sql.ResultSet;
+import java.util.function.Consumer;
 
 @FunctionalInterface
 public interface ResultSetMapper<T> {
 
 	public T map(ResultSet data);
 	
+	/**
+	 * Lit le résultat pendant que la connexion est tenue, le travail qui n'a pas besoin du ResultSet (chargement des liens) est confié à after
+	 * @param data
+	 * @param after Reçoit les traitements à exécuter une fois la connexion rendue
+	 * @return
+	 */
+	public default T read(ResultSet data, Consumer<Runnable> after) {
+		return map(data);
+	}
+	
 }
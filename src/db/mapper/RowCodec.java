@@ -0,0 +1,255 @@
+package db.mapper;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import db.DatabaseTable;
+import db.DatabaseUtils;
+import db.Persistable;
+
+/**
+ * Format binaire compact d'une entité : pour chaque DbField un octet null/non null puis la valeur
+ * Les liens vers d'autres entités sont stockés par leur id
+ */
+public class RowCodec<T extends Persistable> {
+
+	private static final byte NULL = 0;
+	private static final byte NOT_NULL = 1;
+
+	private final Class<T> entity;
+	private final List<Field> fields = new ArrayList<>();
+	private final List<Field> links = new ArrayList<>();
+
+	public RowCodec(Class<T> entity) {
+		this.entity = entity;
+		for (Field field : entity.getFields()) {
+			if (DatabaseUtils.getDbField(field) == null) {
+				continue;
+			}
+			if (!isSupported(field)) {
+				throw new IllegalStateException("Unsupported type " + field.getType().getName() + " for the field " + field.getName());
+			}
+			fields.add(field);
+			if (DatabaseUtils.isDbLink(field)) {
+				links.add(field);
+			}
+		}
+	}
+
+	public List<Field> getFields() {
+		return fields;
+	}
+
+	/**
+	 * Ecrit l'entité à la position courante du buffer
+	 * @param obj
+	 * @param buffer
+	 * @throws java.nio.BufferOverflowException Si le buffer est trop petit
+	 */
+	public void encode(T obj, ByteBuffer buffer) {
+		try {
+			for (Field field : fields) {
+				Object value = field.get(obj);
+				if (value == null) {
+					buffer.put(NULL);
+					continue;
+				}
+				buffer.put(NOT_NULL);
+				write(field.getType(), value, buffer);
+			}
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("Unable to encode the entity", e);
+		}
+	}
+
+	/**
+	 * Lit une entité à la position courante du buffer
+	 * @param buffer
+	 * @return
+	 */
+	public T decode(ByteBuffer buffer) {
+		long[] linkIds = new long[links.size()];
+		T obj = decode(buffer, linkIds, 0);
+		resolveLinks(obj, linkIds, 0);
+		return obj;
+	}
+
+	/**
+	 * Lit une entité sans charger les entités liées, à faire ensuite avec resolveLinks
+	 * @param buffer
+	 * @param linkIds Reçoit l'id des liens à partir de offset, 0 pour un lien null
+	 * @param offset
+	 * @return
+	 */
+	public T decode(ByteBuffer buffer, long[] linkIds, int offset) {
+		try {
+			T obj = entity.getConstructor().newInstance();
+			for (Field field : fields) {
+				boolean isNull = buffer.get() == NULL;
+				if (DatabaseUtils.isDbLink(field)) {
+					linkIds[offset++] = isNull ? 0 : (Long) read(field, buffer, false);
+					continue;
+				}
+				if (isNull) {
+					if (!field.getType().isPrimitive()) {
+						field.set(obj, null);
+					}
+					continue;
+				}
+				field.set(obj, read(field, buffer, true));
+			}
+			return obj;
+		} catch (InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException | NoSuchMethodException | SecurityException e) {
+			throw new IllegalStateException("Unable to decode the entity", e);
+		}
+	}
+
+	/**
+	 * Nombre de liens vers d'autres entités
+	 * @return
+	 */
+	public int linkCount() {
+		return links.size();
+	}
+
+	/**
+	 * Charge les entités liées d'une entité lue avec decode
+	 * @param obj
+	 * @param linkIds
+	 * @param offset
+	 */
+	public void resolveLinks(T obj, long[] linkIds, int offset) {
+		try {
+			for (Field field : links) {
+				long id = linkIds[offset++];
+				field.set(obj, (id == 0) ? null : DatabaseUtils.getDatabaseTable(field).getById(id));
+			}
+		} catch (IllegalAccessException | IllegalArgumentException e) {
+			throw new IllegalStateException("Unable to decode the entity", e);
+		}
+	}
+
+	/**
+	 * Ecrit une ligne brute à la position courante du buffer
+	 * @param row Une valeur par champ dans l'ordre de getFields, les liens par leur id
+	 * @param buffer
+	 * @throws java.nio.BufferOverflowException Si le buffer est trop petit
+	 */
+	public void encodeRow(Object[] row, ByteBuffer buffer) {
+		for (int i = 0; i < row.length; i++) {
+			if (row[i] == null) {
+				buffer.put(NULL);
+				continue;
+			}
+			buffer.put(NOT_NULL);
+			write(fields.get(i).getType(), row[i], buffer);
+		}
+	}
+
+	/**
+	 * Lit une ligne brute à la position courante du buffer, sans charger les entités liées
+	 * @param buffer
+	 * @return Une valeur par champ dans l'ordre de getFields, les liens par leur id
+	 */
+	public Object[] decodeRow(ByteBuffer buffer) {
+		Object[] row = new Object[fields.size()];
+		for (int i = 0; i < row.length; i++) {
+			row[i] = (buffer.get() == NULL) ? null : read(fields.get(i), buffer, false);
+		}
+		return row;
+	}
+
+	private void write(Class<?> type, Object value, ByteBuffer buffer) {
+		if (type == long.class || type == Long.class) {
+			buffer.putLong((Long) value);
+		} else if (type == int.class || type == Integer.class) {
+			buffer.putInt((Integer) value);
+		} else if (type == short.class || type == Short.class) {
+			buffer.putShort((Short) value);
+		} else if (type == byte.class || type == Byte.class) {
+			buffer.put((Byte) value);
+		} else if (type == double.class || type == Double.class) {
+			buffer.putDouble((Double) value);
+		} else if (type == float.class || type == Float.class) {
+			buffer.putFloat((Float) value);
+		} else if (type == boolean.class || type == Boolean.class) {
+			buffer.put((Boolean) value ? NOT_NULL : NULL);
+		} else if (type == String.class) {
+			writeBytes(((String) value).getBytes(StandardCharsets.UTF_8), buffer);
+		} else if (type == BigDecimal.class) {
+			writeBytes(value.toString().getBytes(StandardCharsets.UTF_8), buffer);
+		} else if (type == byte[].class) {
+			writeBytes((byte[]) value, buffer);
+		} else if (java.util.Date.class.isAssignableFrom(type)) {
+			buffer.putLong(((java.util.Date) value).getTime());
+		} else {
+			// Lien vers une autre entité
+			buffer.putLong((value instanceof Persistable) ? ((Persistable) value).getId() : ((Number) value).longValue());
+		}
+	}
+
+	private Object read(Field field, ByteBuffer buffer, boolean loadLinks) {
+		Class<?> type = field.getType();
+		if (type == long.class || type == Long.class) {
+			return buffer.getLong();
+		} else if (type == int.class || type == Integer.class) {
+			return buffer.getInt();
+		} else if (type == short.class || type == Short.class) {
+			return buffer.getShort();
+		} else if (type == byte.class || type == Byte.class) {
+			return buffer.get();
+		} else if (type == double.class || type == Double.class) {
+			return buffer.getDouble();
+		} else if (type == float.class || type == Float.class) {
+			return buffer.getFloat();
+		} else if (type == boolean.class || type == Boolean.class) {
+			return buffer.get() == NOT_NULL;
+		} else if (type == String.class) {
+			return new String(readBytes(buffer), StandardCharsets.UTF_8);
+		} else if (type == BigDecimal.class) {
+			return new BigDecimal(new String(readBytes(buffer), StandardCharsets.UTF_8));
+		} else if (type == byte[].class) {
+			return readBytes(buffer);
+		} else if (type == java.sql.Timestamp.class) {
+			return new java.sql.Timestamp(buffer.getLong());
+		} else if (type == java.sql.Date.class) {
+			return new java.sql.Date(buffer.getLong());
+		} else if (type == java.util.Date.class) {
+			return new java.util.Date(buffer.getLong());
+		}
+		// Lien vers une autre entité
+		long id = buffer.getLong();
+		if (!loadLinks) {
+			return id;
+		}
+		DatabaseTable<?> table = DatabaseUtils.getDatabaseTable(field);
+		return (id == 0) ? null : table.getById(id);
+	}
+
+	private void writeBytes(byte[] bytes, ByteBuffer buffer) {
+		buffer.putInt(bytes.length);
+		buffer.put(bytes);
+	}
+
+	private byte[] readBytes(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	private static boolean isSupported(Field field) {
+		Class<?> type = field.getType();
+		return type.isPrimitive() && type != char.class
+				|| type == Long.class || type == Integer.class || type == Short.class || type == Byte.class
+				|| type == Double.class || type == Float.class || type == Boolean.class
+				|| type == String.class || type == BigDecimal.class || type == byte[].class
+				|| type == java.util.Date.class || type == java.sql.Date.class || type == java.sql.Timestamp.class
+				|| (DatabaseUtils.isDbLink(field) && DatabaseUtils.isPersistable(type));
+	}
+
+}
@@ -1,5 +1,8 @@
 package jasipe.config;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class JasipeConfig {
 
     private String jdbcURL = null;
@@ -9,6 +12,16 @@ public class JasipeConfig {
      */
     private int queryTimeout = 0;
 
+    /**
+     * Duration in ms from which a query is logged as slow (0 = disabled)
+     */
+    private long slowQueryThreshold = 0;
+
+    /**
+     * Capture the query plan of slow queries
+     */
+    private boolean explainSlowQuery = false;
+
     /**
      * Enabled / Disabled cache
      */
@@ -24,6 +37,26 @@ public class JasipeConfig {
      */
     private boolean createTable = false;
 
+    /**
+     * Number of read only connections (0 = all queries use the main connection)
+     */
+    private int readConnections = 0;
+
+    /**
+     * Maximum wait in ms for a free read connection before the query fails
+     */
+    private long readerWait = 30000;
+
+    /**
+     * Pragmas applied on SQLite connections (null = driver defaults)
+     */
+    private SQLiteProfile sqliteProfile = null;
+
+    /**
+     * DatabaseTable classes (annotated with DbTable) checked on starting
+     */
+    private List<String> tables = new ArrayList<>();
+
     public String getJdbcURL() {
         return jdbcURL;
     }
@@ -40,6 +73,22 @@ public class JasipeConfig {
         this.queryTimeout = queryTimeout;
     }
 
+    public long getSlowQueryThreshold() {
+        return slowQueryThreshold;
+    }
+
+    public void setSlowQueryThreshold(long slowQueryThreshold) {
+        this.slowQueryThreshold = slowQueryThreshold;
+    }
+
+    public boolean isExplainSlowQuery() {
+        return explainSlowQuery;
+    }
+
+    public void setExplainSlowQuery(boolean explainSlowQuery) {
+        this.explainSlowQuery = explainSlowQuery;
+    }
+
     public boolean isCacheEnabled() {
         return cacheEnabled;
     }
@@ -64,4 +113,36 @@ public class JasipeConfig {
         this.createTable = createTable;
     }
 
+    public int getReadConnections() {
+        return readConnections;
+    }
+
+    public void setReadConnections(int readConnections) {
+        this.readConnections = readConnections;
+    }
+
+    public long getReaderWait() {
+        return readerWait;
+    }
+
+    public void setReaderWait(long readerWait) {
+        this.readerWait = readerWait;
+    }
+
+    public SQLiteProfile getSqliteProfile() {
+        return sqliteProfile;
+    }
+
+    public void setSqliteProfile(SQLiteProfile sqliteProfile) {
+        this.sqliteProfile = sqliteProfile;
+    }
+
+    public List<String> getTables() {
+        return tables;
+    }
+
+    public void setTables(List<String> tables) {
+        this.tables = tables;
+    }
+
 }
@@ -1,6 +1,9 @@
 package jasipe.config;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 public class JasipeProperties {
 
@@ -22,10 +25,23 @@ public class JasipeProperties {
         JasipeConfig config = new JasipeConfig();
         config.setJdbcURL(properties.getStringOrDefault("url", null));
         config.setQueryTimeout(properties.getIntegerOrDefault("timeout", 0));
+        config.setSlowQueryThreshold(properties.getLongOrDefault("slow_query", 0));
+        config.setExplainSlowQuery(properties.getBooleanOrDefault("slow_query.explain", false));
         config.setCacheEnabled(properties.getBooleanOrDefault("cache", true));
         config.setCheckTable(properties.getBooleanOrDefault("check", true));
         config.setCreateTable(properties.getBooleanOrDefault("create", false));
+        config.setReadConnections(properties.getIntegerOrDefault("readers", 0));
+        config.setReaderWait(properties.getLongOrDefault("readers.wait", 30000));
+        config.setSqliteProfile(SQLiteProfile.resolve(key -> properties.getStringOrDefault(key, null)));
+        config.setTables(splitList(properties.getStringOrDefault("tables", "")));
         return config;
     }
 
+    private static List<String> splitList(String value) {
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(elt -> !elt.isEmpty())
+                .collect(Collectors.toList());
+    }
+
 }
@@ -8,6 +8,7 @@ public class Properties {
     private static final String DEFAULT_STRING = "";
     private static final boolean DEFAULT_BOOLEAN = false;
     private static final int DEFAULT_INTEGER = 0;
+    private static final long DEFAULT_LONG = 0L;
     private static final double DEFAULT_DOUBLE = 0.;
 
     private java.util.Properties properties;
@@ -52,6 +53,11 @@ public class Properties {
         return Integer.parseInt(prop);
     }
 
+    public long getLong(String key) {
+        String prop = this.properties.getProperty(key);
+        return Long.parseLong(prop);
+    }
+
     public double getDouble(String key) {
         String prop = this.properties.getProperty(key);
         return Double.parseDouble(prop);
@@ -93,6 +99,18 @@ public class Properties {
         return Integer.parseInt(prop);
     }
 
+    public long getLongOrDefault(String key) {
+        return this.getLongOrDefault(key, DEFAULT_LONG);
+    }
+
+    public long getLongOrDefault(String key, long defaultValue) {
+        String prop = this.properties.getProperty(key);
+        if (prop == null) {
+            return defaultValue;
+        }
+        return Long.parseLong(prop);
+    }
+
     public double getDoubleOrDefault(String key) {
         return this.getDoubleOrDefault(key, DEFAULT_DOUBLE);
     }
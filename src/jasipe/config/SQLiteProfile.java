@@ -0,0 +1,194 @@
+package jasipe.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * SQLite pragmas applied when a connection is opened
+ * A null or negative value keeps the driver default
+ */
+public class SQLiteProfile {
+
+    public static final String DURABLE = "durable";
+    public static final String BALANCED = "balanced";
+    public static final String BULK_LOAD = "bulk-load";
+
+    /**
+     * DELETE, TRUNCATE, PERSIST, MEMORY, WAL or OFF
+     */
+    private String journalMode = null;
+
+    /**
+     * OFF, NORMAL, FULL or EXTRA
+     */
+    private String synchronous = null;
+
+    /**
+     * Page cache size, in pages if positive, in KiB if negative (0 = default)
+     */
+    private int cacheSize = 0;
+
+    /**
+     * Memory mapped I/O size in bytes
+     */
+    private long mmapSize = -1;
+
+    /**
+     * DEFAULT, FILE or MEMORY
+     */
+    private String tempStore = null;
+
+    /**
+     * Time to wait on a locked database in ms
+     */
+    private int busyTimeout = -1;
+
+    public static SQLiteProfile durable() {
+        SQLiteProfile profile = new SQLiteProfile();
+        profile.setJournalMode("WAL");
+        profile.setSynchronous("FULL");
+        profile.setBusyTimeout(5000);
+        return profile;
+    }
+
+    public static SQLiteProfile balanced() {
+        SQLiteProfile profile = new SQLiteProfile();
+        profile.setJournalMode("WAL");
+        profile.setSynchronous("NORMAL");
+        profile.setCacheSize(-64000);
+        profile.setMmapSize(268435456L);
+        profile.setTempStore("MEMORY");
+        profile.setBusyTimeout(5000);
+        return profile;
+    }
+
+    public static SQLiteProfile bulkLoad() {
+        SQLiteProfile profile = new SQLiteProfile();
+        profile.setJournalMode("MEMORY");
+        profile.setSynchronous("OFF");
+        profile.setCacheSize(-256000);
+        profile.setMmapSize(268435456L);
+        profile.setTempStore("MEMORY");
+        profile.setBusyTimeout(10000);
+        return profile;
+    }
+
+    public static SQLiteProfile of(String name) {
+        switch (name.trim().toLowerCase()) {
+            case DURABLE:
+                return durable();
+            case BALANCED:
+                return balanced();
+            case BULK_LOAD:
+                return bulkLoad();
+            default:
+                throw new IllegalArgumentException("Unknown SQLite profile: " + name);
+        }
+    }
+
+    /**
+     * Build the profile from the configuration: sqlite.profile, then each sqlite.<pragma> key overrides it
+     *
+     * @param properties Value of a configuration key, null if it is not set
+     */
+    public static SQLiteProfile resolve(Function<String, String> properties) {
+        String name = properties.apply("sqlite.profile");
+        SQLiteProfile profile = (name == null) ? new SQLiteProfile() : of(name);
+        profile.setJournalMode(string(properties, "sqlite.journal_mode", profile.getJournalMode()));
+        profile.setSynchronous(string(properties, "sqlite.synchronous", profile.getSynchronous()));
+        profile.setCacheSize((int) number(properties, "sqlite.cache_size", profile.getCacheSize()));
+        profile.setMmapSize(number(properties, "sqlite.mmap_size", profile.getMmapSize()));
+        profile.setTempStore(string(properties, "sqlite.temp_store", profile.getTempStore()));
+        profile.setBusyTimeout((int) number(properties, "sqlite.busy_timeout", profile.getBusyTimeout()));
+        return profile;
+    }
+
+    /**
+     * Get the PRAGMA statements of the profile
+     *
+     * @param readOnly If true the journal mode is not set (a read only connection can not change it)
+     * @return The PRAGMA statements
+     */
+    public List<String> pragmas(boolean readOnly) {
+        List<String> pragmas = new ArrayList<>();
+        if (busyTimeout >= 0) {
+            pragmas.add("PRAGMA busy_timeout = " + busyTimeout);
+        }
+        if (journalMode != null && !readOnly) {
+            pragmas.add("PRAGMA journal_mode = " + journalMode);
+        }
+        if (synchronous != null) {
+            pragmas.add("PRAGMA synchronous = " + synchronous);
+        }
+        if (cacheSize != 0) {
+            pragmas.add("PRAGMA cache_size = " + cacheSize);
+        }
+        if (mmapSize >= 0) {
+            pragmas.add("PRAGMA mmap_size = " + mmapSize);
+        }
+        if (tempStore != null) {
+            pragmas.add("PRAGMA temp_store = " + tempStore);
+        }
+        return pragmas;
+    }
+
+    public String getJournalMode() {
+        return journalMode;
+    }
+
+    public void setJournalMode(String journalMode) {
+        this.journalMode = journalMode;
+    }
+
+    public String getSynchronous() {
+        return synchronous;
+    }
+
+    public void setSynchronous(String synchronous) {
+        this.synchronous = synchronous;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    public void setMmapSize(long mmapSize) {
+        this.mmapSize = mmapSize;
+    }
+
+    public String getTempStore() {
+        return tempStore;
+    }
+
+    public void setTempStore(String tempStore) {
+        this.tempStore = tempStore;
+    }
+
+    public int getBusyTimeout() {
+        return busyTimeout;
+    }
+
+    public void setBusyTimeout(int busyTimeout) {
+        this.busyTimeout = busyTimeout;
+    }
+
+    private static String string(Function<String, String> properties, String key, String defaultValue) {
+        String value = properties.apply(key);
+        return (value == null) ? defaultValue : value.trim();
+    }
+
+    private static long number(Function<String, String> properties, String key, long defaultValue) {
+        String value = properties.apply(key);
+        return (value == null) ? defaultValue : Long.parseLong(value.trim());
+    }
+
+}
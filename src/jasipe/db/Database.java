@@ -12,4 +12,45 @@ public interface Database {
 
     public JasipeConfig getConfiguration();
 
+    /**
+     * Get a connection for read only queries
+     * The connection must be given back with releaseReadConnection
+     *
+     * @return A read connection, or the write connection when no reader is available
+     */
+    public default Connection getReadConnection() {
+        return getConnection();
+    }
+
+    public default void releaseReadConnection(Connection connection) {
+        // Nothing to release by default
+    }
+
+    /**
+     * Wait until no other thread holds a transaction on the write connection, for a single write statement
+     * Must be followed by unlockWriter
+     */
+    public default void lockWriter() {
+        // No concurrent transaction by default
+    }
+
+    public default void unlockWriter() {
+        // Nothing to unlock by default
+    }
+
+    /**
+     * Start a transaction owned by the current thread
+     * The other threads wait in begin and lockWriter until it is committed or rolled back
+     */
+    public boolean begin();
+
+    public boolean commit();
+
+    public boolean rollback();
+
+    /**
+     * @return true if the current thread owns a transaction
+     */
+    public boolean isInTransaction();
+
 }
@@ -4,6 +4,7 @@ import jasipe.config.JasipeConfig;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
 public class DatabaseConnection implements Database {
@@ -13,6 +14,10 @@ public class DatabaseConnection implements Database {
     public Connection db;
     public JasipeConfig config;
 
+    // The write connection is shared, a transaction belongs to the thread that started it
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile Thread owner = null;
+
     public DatabaseConnection(Connection db, JasipeConfig config) {
         if (db == null || config == null) {
             throw new IllegalArgumentException("Connection and JasipeConfig can not be null");
@@ -40,4 +45,72 @@ public class DatabaseConnection implements Database {
     public JasipeConfig getConfiguration() {
         return config;
     }
+
+    @Override
+    public void lockWriter() {
+        writeLock.lock();
+    }
+
+    @Override
+    public void unlockWriter() {
+        writeLock.unlock();
+    }
+
+    @Override
+    public boolean begin() {
+        if (isInTransaction()) {
+            return true;
+        }
+        writeLock.lock();
+        try {
+            db.setAutoCommit(false);
+            owner = Thread.currentThread();
+            return true;
+        } catch (SQLException e) {
+            LOGGER.warning(e.getMessage());
+            writeLock.unlock();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean commit() {
+        try {
+            db.commit();
+            db.setAutoCommit(true);
+            return true;
+        } catch (SQLException e) {
+            LOGGER.warning(e.getMessage());
+            return false;
+        } finally {
+            endTransaction();
+        }
+    }
+
+    @Override
+    public boolean rollback() {
+        try {
+            db.rollback();
+            db.setAutoCommit(true);
+            return true;
+        } catch (SQLException e) {
+            LOGGER.warning(e.getMessage());
+            return false;
+        } finally {
+            endTransaction();
+        }
+    }
+
+    @Override
+    public boolean isInTransaction() {
+        return owner == Thread.currentThread();
+    }
+
+    private void endTransaction() {
+        if (isInTransaction()) {
+            owner = null;
+            writeLock.unlock();
+        }
+    }
+
 }
@@ -0,0 +1,102 @@
+package jasipe.db;
+
+import jasipe.config.JasipeConfig;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * One write connection and a pool of read only connections
+ * Inside a transaction the reads of the thread use the write connection to see its own writes
+ * A thread keeps its read connection for nested reads (links loaded while a result is mapped),
+ * so it never waits for a second connection of the pool
+ */
+public class RoutingDatabaseConnection extends DatabaseConnection {
+
+    private static final Logger LOGGER = Logger.getLogger(RoutingDatabaseConnection.class.getName());
+
+    private final List<Connection> readers;
+    private final BlockingQueue<Connection> available;
+    private final ThreadLocal<Lease> lease = new ThreadLocal<>();
+
+    public RoutingDatabaseConnection(Connection writer, List<Connection> readers, JasipeConfig config) {
+        super(writer, config);
+        if (readers == null || readers.isEmpty()) {
+            throw new IllegalArgumentException("At least one read connection is required");
+        }
+        this.readers = readers;
+        this.available = new ArrayBlockingQueue<>(readers.size(), false, readers);
+    }
+
+    @Override
+    public Connection getReadConnection() {
+        if (isInTransaction()) {
+            return db;
+        }
+        Lease current = lease.get();
+        if (current != null) {
+            current.depth++;
+            return current.connection;
+        }
+        try {
+            Connection connection = available.poll(config.getReaderWait(), TimeUnit.MILLISECONDS);
+            if (connection == null) {
+                throw new IllegalStateException("No read connection available after " + config.getReaderWait() + " ms");
+            }
+            lease.set(new Lease(connection));
+            return connection;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a read connection", e);
+        }
+    }
+
+    @Override
+    public void releaseReadConnection(Connection connection) {
+        if (connection == null || connection == db) {
+            return;
+        }
+        Lease current = lease.get();
+        if (current != null && current.connection == connection && --current.depth > 0) {
+            return;
+        }
+        lease.remove();
+        available.offer(connection);
+    }
+
+    public int getReaderCount() {
+        return readers.size();
+    }
+
+    @Override
+    public boolean close() {
+        boolean result = true;
+        for (Connection reader : readers) {
+            try {
+                reader.close();
+            } catch (SQLException e) {
+                LOGGER.warning(e.getMessage());
+                result = false;
+            }
+        }
+        available.clear();
+        return super.close() && result;
+    }
+
+    private static class Lease {
+
+        private final Connection connection;
+        private int depth = 1;
+
+        private Lease(Connection connection) {
+            this.connection = connection;
+        }
+
+    }
+
+}
@@ -1,18 +1,25 @@
 package jasipe.factory;
 
+import db.SchemaChecker;
 import jasipe.config.JasipeConfig;
 import jasipe.config.JasipeProperties;
 import jasipe.db.Database;
 import jasipe.db.DatabaseConnection;
+import jasipe.db.RoutingDatabaseConnection;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
 import java.util.logging.Logger;
 
 public class DatabaseManager {
 
     private static final Logger LOGGER = Logger.getLogger(DatabaseManager.class.getName());
+    private static final int SQLITE_OPEN_READONLY = 0x00000001;
     private static Database database = null;
 
     /* --- Create Connection --- */
@@ -58,6 +65,11 @@ public class DatabaseManager {
         // Connect to database
         try {
             Connection connection = DriverManager.getConnection(config.getJdbcURL());
+            applySqliteProfile(connection, config, false);
+            checkTables(connection, config);
+            if (config.getReadConnections() > 0) {
+                return new RoutingDatabaseConnection(connection, readConnections(config), config);
+            }
             return new DatabaseConnection(connection, config);
         } catch (SQLException e) {
             LOGGER.severe(e.getMessage());
@@ -65,6 +77,56 @@ public class DatabaseManager {
         }
     }
 
+    private static List<Connection> readConnections(JasipeConfig config) throws SQLException {
+        List<Connection> readers = new ArrayList<>();
+        for (int i = 0; i < config.getReadConnections(); i++) {
+            Connection reader = readConnection(config.getJdbcURL());
+            applySqliteProfile(reader, config, true);
+            readers.add(reader);
+        }
+        return readers;
+    }
+
+    private static void applySqliteProfile(Connection connection, JasipeConfig config, boolean readOnly) throws SQLException {
+        if (config.getSqliteProfile() == null || !config.getJdbcURL().startsWith("jdbc:sqlite:")) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (String pragma : config.getSqliteProfile().pragmas(readOnly)) {
+                statement.execute(pragma);
+            }
+        }
+    }
+
+    private static Connection readConnection(String jdbcURL) throws SQLException {
+        // SQLite can only be opened read only when the connection is created
+        if (jdbcURL.startsWith("jdbc:sqlite:")) {
+            Properties properties = new Properties();
+            properties.setProperty("open_mode", String.valueOf(SQLITE_OPEN_READONLY));
+            return DriverManager.getConnection(jdbcURL, properties);
+        }
+        Connection connection = DriverManager.getConnection(jdbcURL);
+        connection.setReadOnly(true);
+        return connection;
+    }
+
+    private static void checkTables(Connection connection, JasipeConfig config) {
+        if (!config.isCheckTable() || config.getTables().isEmpty()) {
+            return;
+        }
+        List<Class<?>> tables = new ArrayList<>();
+        for (String className : config.getTables()) {
+            try {
+                tables.add(Class.forName(className, false, DatabaseManager.class.getClassLoader()));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Unable to find table class " + className, e);
+            }
+        }
+        if (!new SchemaChecker(connection, config.isCreateTable()).check(tables)) {
+            LOGGER.warning("The database schema does not match the entities");
+        }
+    }
+
     /* --- Close Connection --- */
 
     public static void close() {
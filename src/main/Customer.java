@@ -0,0 +1,29 @@
+package main;
+
+import db.Persistable;
+import db.annotation.DbField;
+import db.annotation.DbId;
+import db.annotation.DbIndex;
+
+public class Customer implements Persistable {
+
+    @DbId
+    @DbField("id")
+    public long id;
+
+    @DbField("name")
+    public String name;
+
+    @DbIndex
+    @DbField("city")
+    public String city;
+
+    @DbField("balance")
+    public double balance;
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+}
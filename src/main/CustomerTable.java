@@ -0,0 +1,22 @@
+package main;
+
+import db.DatabaseTable;
+import db.annotation.DbTable;
+
+@DbTable(name = "customer", entity = Customer.class)
+public class CustomerTable extends DatabaseTable<Customer> {
+
+    private static CustomerTable instance = null;
+
+    private CustomerTable() {
+        super();
+    }
+
+    public static synchronized CustomerTable getInstance() {
+        if (instance == null) {
+            instance = new CustomerTable();
+        }
+        return instance;
+    }
+
+}
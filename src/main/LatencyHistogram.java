@@ -0,0 +1,78 @@
+package main;
+
+/**
+ * Latency histogram with a bounded relative error (1/32), recording costs no allocation
+ * Values below 64 ns have their own bucket, above the buckets grow with the value
+ */
+public class LatencyHistogram {
+
+    private static final int PRECISION = 6;
+    private static final int SUB_BUCKETS = 1 << PRECISION;
+
+    private final long[] counts = new long[(64 - PRECISION + 1) * SUB_BUCKETS];
+    private long count = 0;
+    private long total = 0;
+    private long max = 0;
+
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts[index(value)]++;
+        count++;
+        total += value;
+        max = Math.max(max, value);
+    }
+
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return (count == 0) ? 0 : (double) total / count;
+    }
+
+    /**
+     * Value under which the given percentage of the recorded values are
+     *
+     * @param percentile Between 0 and 100
+     * @return The latency in nanoseconds
+     */
+    public long percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highest(i), max);
+            }
+        }
+        return max;
+    }
+
+    private static int index(long value) {
+        int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - PRECISION);
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long highest(int index) {
+        int shift = index / SUB_BUCKETS;
+        long sub = index % SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+
+}
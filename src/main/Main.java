@@ -1,44 +1,69 @@
 package main;
 
-import jasipe.config.JasipeConfig;
-import jasipe.db.Database;
-import jasipe.factory.DatabaseManager;
+import db.Database;
+import db.DatabaseException;
 
-import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Workload generator, to size a deployment and catch scaling regressions
+ * <p>
+ * The database is configured by database.properties, any key can be changed with -Ddb.key=value
+ * (url, readers, sqlite.profile, timeout, write.queue, ...) to compare connection settings between two runs.
+ * Arguments are key=value pairs:
+ * threads, warmup (s), duration (s), rows, read, query, update, insert (% of each operation)
+ * and cache=on|off|both to run the mix with and without the customer cache.
+ */
 public class Main {
 
     public static void main(String[] args) {
-        Database database = null;
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                System.err.println("Invalid argument " + arg + ", expected key=value");
+                System.exit(1);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        // The workload creates its own tables from the entities
+        if (System.getProperty("db.manager") == null) {
+            System.setProperty("db.manager", WorkloadManager.class.getName());
+        }
+        if (System.getProperty("db.dblink") == null) {
+            System.setProperty("db.dblink", "main");
+        }
+        if (System.getProperty("db.create") == null) {
+            System.setProperty("db.create", "true");
+        }
         try {
-            // create a database connection
-            database = DatabaseManager.sqliteConnection("jasipe.db");
-            Connection db = database.getConnection();
-            JasipeConfig config = database.getConfiguration();
-
-            Statement statement = db.createStatement();
-            statement.setQueryTimeout(config.getQueryTimeout());  // set timeout to 30 sec.
-
-            statement.executeUpdate("drop table if exists person");
-            statement.executeUpdate("create table person (id integer, name string)");
-            statement.executeUpdate("insert into person values(1, 'leo')");
-            statement.executeUpdate("insert into person values(2, 'yui')");
-            ResultSet rs = statement.executeQuery("select * from person");
-            while (rs.next()) {
-                // read the result set
-                System.out.println("name = " + rs.getString("name"));
-                System.out.println("id = " + rs.getInt("id"));
+            Workload workload = new Workload(options);
+            Database.start();
+            System.out.println("Startup " + Database.getStartupTimings());
+            long[] ids = workload.seed(CustomerTable.getInstance());
+            System.out.println("Workload " + workload.describe());
+            String cache = options.getOrDefault("cache", "both");
+            if (!"off".equals(cache)) {
+                System.out.println("cache=on");
+                System.setProperty("db.dblink", "main");
+                workload.run(CustomerTable.getInstance(), PurchaseTable.getInstance(), ids).print(System.out);
             }
-        } catch (SQLException e) {
-            // if the error message is "out of memory",
-            // it probably means no database file is found
+            if (!"on".equals(cache)) {
+                System.out.println("cache=off");
+                // Purchases link to the customers through the uncached table too
+                System.setProperty("db.dblink", "main.uncached");
+                workload.run(main.uncached.CustomerTable.getInstance(), PurchaseTable.getInstance(), ids).print(System.out);
+            }
+        } catch (IllegalArgumentException | IllegalStateException e) {
             System.err.println(e.getMessage());
+            System.exit(1);
         } finally {
-            if (database != null)
-                database.close();
+            try {
+                Database.close();
+            } catch (DatabaseException e) {
+                System.err.println(e.getMessage());
+            }
         }
     }
 
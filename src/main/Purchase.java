@@ -0,0 +1,30 @@
+package main;
+
+import db.Persistable;
+import db.annotation.DbField;
+import db.annotation.DbId;
+import db.annotation.DbLink;
+
+public class Purchase implements Persistable {
+
+    @DbId
+    @DbField("id")
+    public long id;
+
+    // Package from the dblink property, Main switches it to main.uncached for the run without cache
+    @DbLink
+    @DbField("customer")
+    public Customer customer;
+
+    @DbField("amount")
+    public double amount;
+
+    @DbField("created")
+    public long created;
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+}
@@ -0,0 +1,22 @@
+package main;
+
+import db.DatabaseTable;
+import db.annotation.DbTable;
+
+@DbTable(name = "purchase", entity = Purchase.class)
+public class PurchaseTable extends DatabaseTable<Purchase> {
+
+    private static PurchaseTable instance = null;
+
+    private PurchaseTable() {
+        super();
+    }
+
+    public static synchronized PurchaseTable getInstance() {
+        if (instance == null) {
+            instance = new PurchaseTable();
+        }
+        return instance;
+    }
+
+}
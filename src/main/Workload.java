@@ -0,0 +1,242 @@
+package main;
+
+import db.Criteria;
+import db.Database;
+import db.DatabaseTable;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Read/write mix run through DatabaseTable by several threads during a fixed time
+ * Each thread records the latency of its operations in its own histograms, merged at the end
+ */
+public class Workload {
+
+    public enum Operation {
+        READ, QUERY, UPDATE, INSERT
+    }
+
+    private static final String[] CITIES = {"Paris", "Lyon", "Lille", "Nantes", "Bordeaux", "Marseille", "Rennes", "Nice"};
+    private static final int SEED_BATCH = 500;
+
+    private final int threads;
+    private final long warmupMs;
+    private final long durationMs;
+    private final int rows;
+    private final int[] mix = new int[Operation.values().length];
+
+    /**
+     * @param options threads, warmup (s), duration (s), rows and the percentage of each operation (read, query, update, insert)
+     */
+    public Workload(Map<String, String> options) {
+        threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+        warmupMs = Long.parseLong(options.getOrDefault("warmup", "2")) * 1000;
+        durationMs = Long.parseLong(options.getOrDefault("duration", "10")) * 1000;
+        rows = Integer.parseInt(options.getOrDefault("rows", "1000"));
+        mix[Operation.READ.ordinal()] = Integer.parseInt(options.getOrDefault("read", "70"));
+        mix[Operation.QUERY.ordinal()] = Integer.parseInt(options.getOrDefault("query", "10"));
+        mix[Operation.UPDATE.ordinal()] = Integer.parseInt(options.getOrDefault("update", "10"));
+        mix[Operation.INSERT.ordinal()] = Integer.parseInt(options.getOrDefault("insert", "10"));
+        int sum = 0;
+        for (int weight : mix) {
+            sum += weight;
+        }
+        if (sum != 100) {
+            throw new IllegalArgumentException("The operation mix must add up to 100, found " + sum);
+        }
+    }
+
+    /**
+     * Insert customers until the table has the configured number of rows
+     *
+     * @return The ids of the customers
+     */
+    public long[] seed(DatabaseTable<Customer> customers) {
+        long missing = rows - customers.count();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (missing > 0) {
+            List<Customer> batch = new ArrayList<>();
+            for (int i = 0; i < Math.min(missing, SEED_BATCH); i++) {
+                Customer customer = new Customer();
+                customer.name = "customer-" + random.nextInt(1_000_000);
+                customer.city = CITIES[random.nextInt(CITIES.length)];
+                customer.balance = random.nextInt(10_000);
+                batch.add(customer);
+            }
+            if (customers.saveAll(batch) == null) {
+                throw new IllegalStateException("Unable to seed the customer table");
+            }
+            missing -= batch.size();
+        }
+        return customers.fetchLongColumn("id");
+    }
+
+    public Result run(DatabaseTable<Customer> customers, DatabaseTable<Purchase> purchases, long[] ids) {
+        if (ids.length == 0) {
+            throw new IllegalStateException("No customer to run the workload on");
+        }
+        // Java 13 has no virtual threads, the workload runs on a pool of platform threads
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.currentTimeMillis();
+        long measureFrom = System.nanoTime() + warmupMs * 1_000_000;
+        long end = start + warmupMs + durationMs;
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(pool.submit(() -> work(customers, purchases, ids, measureFrom, end)));
+            }
+            Result result = new Result(durationMs);
+            for (Future<Result> future : futures) {
+                result.merge(future.get());
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Workload interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Workload failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    public String describe() {
+        return String.format("dialect=%s threads=%d warmup=%ds duration=%ds rows=%d read=%d%% query=%d%% update=%d%% insert=%d%%",
+                Database.getDialect(), threads, warmupMs / 1000, durationMs / 1000, rows,
+                mix[0], mix[1], mix[2], mix[3]);
+    }
+
+    private Result work(DatabaseTable<Customer> customers, DatabaseTable<Purchase> purchases, long[] ids, long measureFrom, long end) {
+        Result result = new Result(durationMs);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.currentTimeMillis() < end) {
+            Operation operation = pick(random.nextInt(100));
+            long id = ids[random.nextInt(ids.length)];
+            long start = System.nanoTime();
+            boolean ok = execute(operation, customers, purchases, id, random);
+            long elapsed = System.nanoTime() - start;
+            if (start >= measureFrom) {
+                result.record(operation, elapsed, ok);
+            }
+        }
+        return result;
+    }
+
+    private boolean execute(Operation operation, DatabaseTable<Customer> customers, DatabaseTable<Purchase> purchases, long id, ThreadLocalRandom random) {
+        switch (operation) {
+            case READ:
+                return customers.getById(id) != null;
+            case QUERY:
+                customers.getWhere(Criteria.where().eq("city", CITIES[random.nextInt(CITIES.length)]).limit(20));
+                return true;
+            case UPDATE:
+                Customer current = customers.getById(id);
+                if (current == null) {
+                    return false;
+                }
+                // A copy, the cached entity can be read by the other threads
+                Customer customer = new Customer();
+                customer.id = current.id;
+                customer.name = current.name;
+                customer.city = current.city;
+                customer.balance = random.nextInt(10_000);
+                return customers.save(customer) != null;
+            default:
+                Purchase purchase = new Purchase();
+                purchase.customer = customers.getById(id);
+                purchase.amount = random.nextInt(1_000);
+                purchase.created = System.currentTimeMillis();
+                return purchase.customer != null && purchases.save(purchase) != null;
+        }
+    }
+
+    private Operation pick(int draw) {
+        int bound = 0;
+        for (Operation operation : Operation.values()) {
+            bound += mix[operation.ordinal()];
+            if (draw < bound) {
+                return operation;
+            }
+        }
+        return Operation.READ;
+    }
+
+    /**
+     * Latencies and errors of each operation
+     */
+    public static class Result {
+
+        private final long durationMs;
+        private final LatencyHistogram[] histograms = new LatencyHistogram[Operation.values().length];
+        private final long[] errors = new long[Operation.values().length];
+
+        private Result(long durationMs) {
+            this.durationMs = durationMs;
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new LatencyHistogram();
+            }
+        }
+
+        private void record(Operation operation, long nanos, boolean ok) {
+            histograms[operation.ordinal()].record(nanos);
+            if (!ok) {
+                errors[operation.ordinal()]++;
+            }
+        }
+
+        private void merge(Result other) {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i].merge(other.histograms[i]);
+                errors[i] += other.errors[i];
+            }
+        }
+
+        public LatencyHistogram getHistogram(Operation operation) {
+            return histograms[operation.ordinal()];
+        }
+
+        public long getErrors(Operation operation) {
+            return errors[operation.ordinal()];
+        }
+
+        public double throughput() {
+            long count = 0;
+            for (LatencyHistogram histogram : histograms) {
+                count += histogram.getCount();
+            }
+            return count * 1000.0 / durationMs;
+        }
+
+        public void print(PrintStream out) {
+            out.printf("  %-8s %10s %10s %10s %10s %10s %10s %10s %8s%n", "op", "count", "ops/s", "mean(us)", "p50(us)", "p90(us)", "p99(us)", "p99.9(us)", "errors");
+            LatencyHistogram total = new LatencyHistogram();
+            long totalErrors = 0;
+            for (Operation operation : Operation.values()) {
+                LatencyHistogram histogram = getHistogram(operation);
+                total.merge(histogram);
+                totalErrors += getErrors(operation);
+                if (histogram.getCount() > 0) {
+                    print(out, operation.name().toLowerCase(), histogram, getErrors(operation));
+                }
+            }
+            print(out, "total", total, totalErrors);
+        }
+
+        private void print(PrintStream out, String name, LatencyHistogram histogram, long errors) {
+            out.printf("  %-8s %10d %10.0f %10.1f %10.1f %10.1f %10.1f %10.1f %8d%n", name, histogram.getCount(),
+                    histogram.getCount() * 1000.0 / durationMs, histogram.getMean() / 1000,
+                    histogram.percentile(50) / 1000.0, histogram.percentile(90) / 1000.0,
+                    histogram.percentile(99) / 1000.0, histogram.percentile(99.9) / 1000.0, errors);
+        }
+
+    }
+
+}
@@ -0,0 +1,44 @@
+package main;
+
+import db.DatabaseManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Database manager of the workload, the tables are created from the entities (create=true)
+ */
+public class WorkloadManager extends DatabaseManager {
+
+    private static WorkloadManager instance = null;
+
+    public static synchronized WorkloadManager getInstance() {
+        if (instance == null) {
+            instance = new WorkloadManager();
+        }
+        return instance;
+    }
+
+    @Override
+    public List<String> create() {
+        // Only the table used to know if the database is set
+        return Collections.singletonList("Create Table workload_verification (id Integer)");
+    }
+
+    @Override
+    public List<String> drop() {
+        return Arrays.asList("Drop Table purchase", "Drop Table customer", "Drop Table workload_verification");
+    }
+
+    @Override
+    public List<String> content() {
+        return null;
+    }
+
+    @Override
+    public List<Class<?>> tables() {
+        return Arrays.asList(CustomerTable.class, PurchaseTable.class);
+    }
+
+}
@@ -0,0 +1,29 @@
+package main.uncached;
+
+import db.DatabaseTable;
+import db.annotation.DbTable;
+import db.cache.CachePolicy;
+import main.Customer;
+
+/**
+ * Same table as main.CustomerTable without cache, to measure the cost of every read going to the database
+ * <p>
+ * Same class name in its own package so a DbLink pointing to main.uncached loads it
+ */
+@DbTable(name = "customer", entity = Customer.class, cache = CachePolicy.NONE)
+public class CustomerTable extends DatabaseTable<Customer> {
+
+    private static CustomerTable instance = null;
+
+    private CustomerTable() {
+        super();
+    }
+
+    public static synchronized CustomerTable getInstance() {
+        if (instance == null) {
+            instance = new CustomerTable();
+        }
+        return instance;
+    }
+
+}